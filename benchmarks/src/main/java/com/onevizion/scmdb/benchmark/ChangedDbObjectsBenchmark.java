@@ -0,0 +1,54 @@
+package com.onevizion.scmdb.benchmark;
+
+import com.onevizion.scmdb.SqlLexer;
+import com.onevizion.scmdb.facade.DdlFacade;
+import com.onevizion.scmdb.vo.DdlEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Search of changed db objects in release scripts, which {@code DdlFacade.findChangedDbObjects} runs for every new
+ * script of --gen-ddl and the parallel scheduler runs for every statement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChangedDbObjectsBenchmark {
+    @Param({"10", "100", "1000"})
+    private int statements;
+
+    private String scriptText;
+    private DdlFacade ddlFacade;
+
+    @Setup
+    public void setUp() {
+        scriptText = Corpus.releaseScript(Corpus.newRandom(), statements);
+        ddlFacade = new DdlFacade();
+    }
+
+    @Benchmark
+    public List<DdlEvent> ddlEvents() {
+        return new SqlLexer(scriptText).readDdlEvents();
+    }
+
+    @Benchmark
+    public Set<String> changedDbObjectNames() {
+        return ddlFacade.findChangedDbObjectNames(scriptText);
+    }
+}
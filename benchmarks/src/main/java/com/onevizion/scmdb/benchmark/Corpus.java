@@ -0,0 +1,149 @@
+package com.onevizion.scmdb.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generators of synthetic scripts, DDL and sqlcl output. A fixed seed keeps the corpus the same between runs, so
+ * results of different builds can be compared.
+ */
+public final class Corpus {
+    public static final String SCHEMA_NAME = "BENCH_OWNER";
+
+    private static final long SEED = 20170601L;
+    private static final String[] OBJECT_PREFIXES = {"XITOR", "PROGRAM", "WP_TASK", "CONFIG_FIELD", "RULE", "REPORT"};
+
+    private Corpus() {}
+
+    public static Random newRandom() {
+        return new Random(SEED);
+    }
+
+    public static String scriptName(int number, boolean isRollback) {
+        return String.format("%06d_release_%d%s.sql", number, number % 97, isRollback ? "_rollback" : "");
+    }
+
+    public static String objectName(Random random) {
+        return OBJECT_PREFIXES[random.nextInt(OBJECT_PREFIXES.length)] + "_" + random.nextInt(5000);
+    }
+
+    /**
+     * A release script which mixes DDL, DML, comments, string literals and PL/SQL blocks with dynamic SQL.
+     */
+    public static String releaseScript(Random random, int statements) {
+        StringBuilder script = new StringBuilder("-- release script\n/* generated for benchmarks */\n");
+        for (int i = 0; i < statements; i++) {
+            String name = objectName(random);
+            switch (random.nextInt(8)) {
+                case 0:
+                    script.append("create table ").append(name).append(" (\n    ").append(name.toLowerCase())
+                          .append("_id number not null,\n    name varchar2(255 char),\n    constraint pk_").append(name)
+                          .append(" primary key (").append(name.toLowerCase()).append("_id)\n);\n");
+                    break;
+                case 1:
+                    script.append("alter table ").append(name).append(" add (description varchar2(4000));\n");
+                    break;
+                case 2:
+                    script.append("comment on column ").append(name).append(".name is 'Name of the ''")
+                          .append(name).append("'' record; create table is not a statement here';\n");
+                    break;
+                case 3:
+                    script.append("insert into ").append(name).append(" (name) values ('drop table ")
+                          .append(name).append("');\n");
+                    break;
+                case 4:
+                    script.append("create index ix_").append(name).append(" on ").append(name).append(" (name);\n");
+                    break;
+                case 5:
+                    script.append("begin\n    execute immediate 'create sequence seq_").append(name).append("';\n")
+                          .append("    update ").append(name).append(" set name = q'[it's done]';\nend;\n/\n");
+                    break;
+                case 6:
+                    script.append("create or replace package pkg_").append(name).append(" as\n")
+                          .append("    procedure run(p_id in number);\nend pkg_").append(name).append(";\n/\n");
+                    break;
+                default:
+                    script.append("update ").append(name).append(" set name = upper(name) where ")
+                          .append(name.toLowerCase()).append("_id > ").append(random.nextInt(1000)).append(";\n");
+                    break;
+            }
+        }
+        return script.toString();
+    }
+
+    /**
+     * A package body as dbms_metadata returns it: schema qualified names, tabs and a trailing terminator.
+     */
+    public static String packageBodyDdl(Random random, int procedures) {
+        String name = "PKG_" + objectName(random);
+        StringBuilder ddl = new StringBuilder("\n  CREATE OR REPLACE EDITIONABLE PACKAGE BODY \"" + SCHEMA_NAME + "\".\"")
+                .append(name).append("\" AS\n");
+        for (int i = 0; i < procedures; i++) {
+            String table = objectName(random);
+            ddl.append("\n\tprocedure proc_").append(i).append("(p_id in number) is\n")
+               .append("\t\tv_count number;\n\tbegin\n")
+               .append("\t\tselect count(*) into v_count from \"").append(SCHEMA_NAME).append("\".\"").append(table)
+               .append("\" where id = p_id ;\n")
+               .append("\t\tif v_count = 0 then\n\t\t\traise_application_error(-20000, 'Not found: ' || p_id);\n")
+               .append("\t\tend if;\n\tend proc_").append(i).append(";\n");
+        }
+        ddl.append("\nend ").append(name).append(";\n  \n/\n  ");
+        return ddl.toString();
+    }
+
+    /**
+     * A table as dbms_metadata returns it, with referencing columns.
+     */
+    public static String tableDdl(Random random, int columns) {
+        String name = objectName(random);
+        StringBuilder ddl = new StringBuilder("\n  CREATE TABLE \"" + SCHEMA_NAME + "\".\"").append(name)
+                .append("\" \n   (\t\"ID\" NUMBER NOT NULL ENABLE");
+        for (int i = 0; i < columns; i++) {
+            ddl.append(", \n\t\"COL_").append(i).append("\" VARCHAR2(255 CHAR)");
+            if (i % 5 == 0) {
+                ddl.append(" \n\t CONSTRAINT \"FK_").append(name).append('_').append(i).append("\" \n\t REFERENCES \"")
+                   .append(SCHEMA_NAME).append("\".\"").append(objectName(random)).append("\" (\"ID\") ENABLE");
+            }
+        }
+        ddl.append("\n   ) ;\n  ");
+        return ddl.toString();
+    }
+
+    /**
+     * Lines of sqlcl output of a script run, with a banner, feedback, warnings, errors and invalid objects.
+     */
+    public static List<String> outputLines(Random random, int count) {
+        List<String> lines = new ArrayList<>(count);
+        lines.add("SQLcl: Release 17.2.0 Production on Thu Jun 01 10:00:00 2017");
+        lines.add("Copyright (c) 1982, 2017, Oracle.  All rights reserved.");
+        lines.add("Oracle Database 12c Enterprise Edition Release 12.2.0.1.0 - 64bit Production");
+        while (lines.size() < count) {
+            String name = objectName(random);
+            switch (random.nextInt(10)) {
+                case 0:
+                    lines.add("Error starting at line : " + random.nextInt(500) + " in command -");
+                    lines.add("ORA-00942: table or view does not exist");
+                    break;
+                case 1:
+                    lines.add("Warning: Package Body " + name + " compiled with errors");
+                    break;
+                case 2:
+                    lines.add("Invalid objects in " + SCHEMA_NAME + ":");
+                    lines.add("PACKAGE BODY PKG_" + name + " is invalid.");
+                    break;
+                case 3:
+                    lines.add("Table " + name + " altered.");
+                    break;
+                case 4:
+                    lines.add("PL/SQL procedure successfully completed.");
+                    break;
+                default:
+                    lines.add(random.nextInt(100) + " rows updated.");
+                    break;
+            }
+        }
+        lines.add("Disconnected from Oracle Database 12c Enterprise Edition Release 12.2.0.1.0 - 64bit Production");
+        return lines;
+    }
+}
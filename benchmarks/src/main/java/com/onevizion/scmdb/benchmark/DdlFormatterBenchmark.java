@@ -0,0 +1,58 @@
+package com.onevizion.scmdb.benchmark;
+
+import com.onevizion.scmdb.DdlFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.StringReader;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting of package bodies and tables which DdlGenerator runs before it writes DDL files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DdlFormatterBenchmark {
+    @Param({"10", "1000", "10000"})
+    private int size;
+
+    private String packageBodyDdl;
+    private String tableDdl;
+    private DdlFormatter formatter;
+
+    @Setup
+    public void setUp() {
+        Random random = Corpus.newRandom();
+        packageBodyDdl = Corpus.packageBodyDdl(random, size);
+        tableDdl = Corpus.tableDdl(random, Math.min(size, 1000));
+        formatter = new DdlFormatter(Corpus.SCHEMA_NAME);
+    }
+
+    @Benchmark
+    public String packageBody() {
+        StringBuilder ddl = new StringBuilder(packageBodyDdl.length());
+        formatter.formatPackage(new StringReader(packageBodyDdl), ddl);
+        return ddl.toString();
+    }
+
+    @Benchmark
+    public String table() {
+        StringBuilder ddl = new StringBuilder(tableDdl.length());
+        formatter.formatTable(new StringReader(tableDdl), ddl);
+        return ddl.toString();
+    }
+}
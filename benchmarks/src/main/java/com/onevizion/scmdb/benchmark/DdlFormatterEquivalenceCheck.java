@@ -0,0 +1,124 @@
+package com.onevizion.scmdb.benchmark;
+
+import com.onevizion.scmdb.DdlFormatter;
+
+import java.io.StringReader;
+import java.util.Random;
+import java.util.function.BiConsumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Compares the streaming DdlFormatter with the regex chains DdlGenerator ran before it. Formats the corpus DDL and
+ * random DDL made of tokens the chains are sensitive to, prints every mismatch and exits with 1 if there was any.
+ * Arguments: [count of random DDL] [max tokens in random DDL] [seed].
+ */
+public class DdlFormatterEquivalenceCheck {
+    private static final int DEFAULT_COUNT = 100000;
+    private static final int DEFAULT_MAX_TOKENS = 40;
+    private static final int MAX_REPORTED_MISMATCHES = 20;
+    private static final String SCHEMA_PREFIX = String.format("\"%s\".", Corpus.SCHEMA_NAME);
+    private static final String[] TOKENS = {" ", "  ", "\n", "\r", "\t", "\r\n", "\u000B", "\f", "\u0085", "\u2028",
+            ";", "/", "(", ")", "\"", "\"" + Corpus.SCHEMA_NAME + "\"", SCHEMA_PREFIX, "\"" + Corpus.SCHEMA_NAME + "\"\n",
+            "\"BENCH_OW", "REFERENCES", "REFER", "R", "A", "x", "\u00e9", "TRG_1", "ALTER TRIGGER \"", "\" ENABLE;",
+            "ALTER TRIGGER \"TRG_1\" ENABLE;"};
+
+    private final DdlFormatter formatter = new DdlFormatter(Corpus.SCHEMA_NAME.toLowerCase());
+    private int mismatchCount;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_COUNT;
+        int maxTokens = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_MAX_TOKENS;
+        Random random = args.length > 2 ? new Random(Long.parseLong(args[2])) : Corpus.newRandom();
+
+        DdlFormatterEquivalenceCheck check = new DdlFormatterEquivalenceCheck();
+        Random corpusRandom = Corpus.newRandom();
+        for (int size : new int[]{1, 10, 1000}) {
+            check.checkAll(Corpus.packageBodyDdl(corpusRandom, size));
+            check.checkAll(Corpus.tableDdl(corpusRandom, size));
+        }
+        for (int i = 0; i < count && check.mismatchCount < MAX_REPORTED_MISMATCHES; i++) {
+            check.checkAll(randomDdl(random, maxTokens));
+        }
+
+        System.out.println(check.mismatchCount == 0 ? "DdlFormatter output equals the regex chains output"
+                : check.mismatchCount + " mismatches");
+        if (check.mismatchCount > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static String randomDdl(Random random, int maxTokens) {
+        StringBuilder ddl = new StringBuilder();
+        int tokenCount = random.nextInt(maxTokens + 1);
+        for (int i = 0; i < tokenCount; i++) {
+            ddl.append(TOKENS[random.nextInt(TOKENS.length)]);
+        }
+        return ddl.toString();
+    }
+
+    private void checkAll(String ddl) {
+        check("package", ddl, formatter::formatPackage, DdlFormatterEquivalenceCheck::formatPackage);
+        check("table", ddl, formatter::formatTable, DdlFormatterEquivalenceCheck::formatTable);
+        check("view", ddl, formatter::formatView, DdlFormatterEquivalenceCheck::formatView);
+        check("first index", ddl, (reader, out) -> formatter.formatIndex(reader, "\r\n\r\n", out),
+                expected -> formatIndex(expected, "\r\n\r\n"));
+        check("index", ddl, (reader, out) -> formatter.formatIndex(reader, "\r\n", out),
+                expected -> formatIndex(expected, "\r\n"));
+        check("trigger", ddl, formatter::formatTrigger, DdlFormatterEquivalenceCheck::formatTrigger);
+    }
+
+    private void check(String kind, String ddl, BiConsumer<StringReader, StringBuilder> streaming,
+                       UnaryOperator<String> regexChain) {
+        StringBuilder actual = new StringBuilder();
+        streaming.accept(new StringReader(ddl), actual);
+        String expected = regexChain.apply(ddl);
+        if (!expected.contentEquals(actual)) {
+            mismatchCount++;
+            System.out.println(kind + " DDL: " + escape(ddl));
+            System.out.println("  expected: " + escape(expected));
+            System.out.println("  actual:   " + escape(actual.toString()));
+        }
+    }
+
+    private static String escape(String s) {
+        return s.replace("\r", "\\r").replace("\n", "\\n").replace("\t", "\\t");
+    }
+
+    private static String removeSchemaName(String ddl) {
+        return ddl.replaceAll(SCHEMA_PREFIX, "");
+    }
+
+    private static String formatPackage(String ddl) {
+        ddl = removeSchemaName(ddl).trim();
+        ddl = ddl.replaceFirst("\\s+/$", "\n/");
+        return ddl.replaceAll("\\n", "\r\n");
+    }
+
+    private static String formatTable(String ddl) {
+        ddl = removeSchemaName(ddl).trim();
+        ddl = ddl.replaceAll("\\s+;", ";");
+        ddl = ddl.replaceFirst("\\n\\s+\\(", "(\n");
+        ddl = ddl.replaceFirst("\\s+\\)", "\n)");
+        ddl = ddl.replaceAll("\\n", "\r\n");
+        ddl = ddl.replaceAll("\\t", "    ");
+        return ddl.replaceAll("\\r\\n\\s+REFERENCES\\s", " REFERENCES ");
+    }
+
+    private static String formatView(String ddl) {
+        ddl = removeSchemaName(ddl).trim();
+        ddl = ddl.replaceAll("\\s+;", ";");
+        return ddl.replaceAll("\\n", "\r\n");
+    }
+
+    private static String formatIndex(String ddl, String prefix) {
+        ddl = prefix + removeSchemaName(ddl).trim();
+        return ddl.replaceAll("\\s+;$", ";");
+    }
+
+    private static String formatTrigger(String ddl) {
+        ddl = removeSchemaName(ddl).trim();
+        ddl = "\r\n" + ddl.replaceAll("\\n", "\r\n");
+        ddl = ddl.replaceAll("\\s+/", "\r\n/");
+        return ddl.replaceFirst("ALTER TRIGGER \"\\w+\" ENABLE;", "");
+    }
+}
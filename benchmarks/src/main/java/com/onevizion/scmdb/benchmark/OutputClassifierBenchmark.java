@@ -0,0 +1,46 @@
+package com.onevizion.scmdb.benchmark;
+
+import com.onevizion.scmdb.OutputClassifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Classification of sqlcl output lines which SqlScriptExecutor runs for every line a script prints.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OutputClassifierBenchmark {
+    private static final int LINES = 10000;
+
+    private List<String> lines;
+
+    @Setup
+    public void setUp() {
+        lines = Corpus.outputLines(Corpus.newRandom(), LINES);
+    }
+
+    @Benchmark
+    public void classify(Blackhole blackhole) {
+        OutputClassifier classifier = new OutputClassifier();
+        for (String line : lines) {
+            blackhole.consume(classifier.classify(line));
+        }
+        blackhole.consume(classifier.getErrorCount());
+    }
+}
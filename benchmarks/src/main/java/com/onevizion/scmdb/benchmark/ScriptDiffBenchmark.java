@@ -0,0 +1,115 @@
+package com.onevizion.scmdb.benchmark;
+
+import com.onevizion.scmdb.AppArguments;
+import com.onevizion.scmdb.RunMetrics;
+import com.onevizion.scmdb.facade.DbScriptFacade;
+import com.onevizion.scmdb.vo.ScriptStatus;
+import com.onevizion.scmdb.vo.ScriptType;
+import com.onevizion.scmdb.vo.SqlScript;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.ReflectionUtils;
+
+import java.io.File;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * New, updated and deleted scripts search of {@link DbScriptFacade} against an in-memory snapshot of db_script.
+ * About 1% of the scripts are new, 1% are changed and 1% are deleted.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScriptDiffBenchmark {
+    @Param({"1000", "10000", "100000"})
+    private int scripts;
+
+    private DbScriptFacade facade;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        Random random = Corpus.newRandom();
+        List<SqlScript> scriptsInDir = new ArrayList<>(scripts);
+        Map<String, SqlScript> dbScripts = new HashMap<>();
+        for (int number = 0; number < scripts / 2; number++) {
+            // a commit is deleted together with its rollback, otherwise the facade stops with an error
+            boolean isDeleted = random.nextInt(100) == 0;
+            for (boolean isRollback : new boolean[]{false, true}) {
+                SqlScript script = newScript(Corpus.scriptName(number, isRollback), random);
+                int kind = random.nextInt(100);
+                if (kind != 0 || isDeleted) {
+                    SqlScript saved = newScript(script.getName(), random);
+                    saved.setId((long) dbScripts.size());
+                    if (kind != 1) {
+                        saved.setFileHash(script.getFileHash());
+                    }
+                    dbScripts.put(saved.getName(), saved);
+                }
+                if (!isDeleted) {
+                    scriptsInDir.add(script);
+                }
+            }
+        }
+
+        Constructor<AppArguments> appArgumentsConstructor = AppArguments.class.getDeclaredConstructor();
+        appArgumentsConstructor.setAccessible(true);
+        AppArguments appArguments = appArgumentsConstructor.newInstance();
+        appArguments.setScriptsDirectory(new File("scripts"));
+
+        facade = new DbScriptFacade();
+        setField("appArguments", appArguments);
+        setField("runMetrics", new RunMetrics());
+        setField("scriptsInDir", CompletableFuture.completedFuture(scriptsInDir));
+        setField("dbScriptsSnapshot", dbScripts);
+    }
+
+    private SqlScript newScript(String name, Random random) {
+        SqlScript script = new SqlScript();
+        script.setName(name);
+        script.setFileHash(Long.toHexString(random.nextLong()) + Long.toHexString(random.nextLong()));
+        script.setType(name.contains("_rollback") ? ScriptType.ROLLBACK : ScriptType.COMMIT);
+        script.setStatus(ScriptStatus.EXECUTED);
+        return script;
+    }
+
+    private void setField(String name, Object value) {
+        Field field = ReflectionUtils.findField(DbScriptFacade.class, name);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, facade, value);
+    }
+
+    @Benchmark
+    public List<SqlScript> newScripts() {
+        return facade.getNewScripts();
+    }
+
+    @Benchmark
+    public List<SqlScript> updatedScripts() {
+        return facade.getUpdatedScripts();
+    }
+
+    @Benchmark
+    public Map<String, SqlScript> deletedScripts() {
+        return facade.getDeletedScriptsMap();
+    }
+}
@@ -0,0 +1,65 @@
+package com.onevizion.scmdb.benchmark;
+
+import com.onevizion.scmdb.vo.SqlScript;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SqlScript#create(File)} with hashing of script files of different sizes. Files are small enough to stay in
+ * the page cache, so the benchmark measures reading and hashing rather than the disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScriptHashBenchmark {
+    @Param({"2", "200", "2000"})
+    private int statements;
+
+    private File scriptsDirectory;
+    private File scriptFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = Corpus.newRandom();
+        scriptsDirectory = Files.createTempDirectory("scmdb-bench").toFile();
+        scriptFile = new File(scriptsDirectory, Corpus.scriptName(1, false));
+        String text = Corpus.releaseScript(random, statements).replace("\n", "\r\n");
+        FileUtils.write(scriptFile, text, StandardCharsets.UTF_8);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(scriptsDirectory);
+    }
+
+    @Benchmark
+    public SqlScript create() {
+        return SqlScript.create(scriptFile);
+    }
+
+    @Benchmark
+    public String hashFile() {
+        return SqlScript.hashFile(scriptFile);
+    }
+}
@@ -1,9 +1,11 @@
 package com.onevizion.scmdb;
 
 import com.onevizion.scmdb.vo.DbCnnCredentials;
+import com.onevizion.scmdb.vo.ExecutionEngine;
 import joptsimple.OptionParser;
 import joptsimple.OptionSet;
 import joptsimple.OptionSpec;
+import org.apache.commons.codec.digest.DigestUtils;
 
 import java.io.File;
 
@@ -12,13 +14,34 @@ import static java.util.Arrays.asList;
 public class AppArguments {
     private File scriptsDirectory;
     private File ddlsDirectory;
+    private File manifestFile;
     private DbCnnCredentials ownerCredentials;
     private DbCnnCredentials userCredentials;
     private boolean genDdl;
+    private boolean fullDdl;
     private boolean executeScripts;
     private boolean useColorLogging = true;
+    private int scanThreads;
+    private int parallelScripts = 1;
+    private int compileInvalidsInterval = COMPILE_INVALIDS_EACH;
+    private int outputCaptureCap = DEFAULT_OUTPUT_CAPTURE_CAP;
+    private int reportSlowest;
+    private String showOutputScriptName;
+    private File logFile;
+    private File metricsJsonFile;
+    private File metricsPrometheusFile;
+    private File targetsFile;
+    private int parallelTargets = DEFAULT_PARALLEL_TARGETS;
+    private String targetName;
+    private ExecutionEngine executionEngine = ExecutionEngine.SQLCL;
 
     private final static String DDL_DIRECTORY_NAME = "ddl";
+    private final static String SCMDB_HOME_DIRECTORY_NAME = ".scmdb";
+    private final static String MANIFEST_FILE_EXTENSION = ".manifest";
+    private final static int COMPILE_INVALIDS_EACH = 1;
+    private final static int COMPILE_INVALIDS_AT_END = 0;
+    private final static int DEFAULT_OUTPUT_CAPTURE_CAP = 1024 * 1024;
+    private final static int DEFAULT_PARALLEL_TARGETS = 4;
 
     private AppArguments() {}
 
@@ -31,22 +54,60 @@ public class AppArguments {
         OptionSpec<String> ownerSchemaOption = parser.accepts("owner-schema").withRequiredArg().ofType(String.class);
         OptionSpec<String> userSchemaOption = parser.accepts("user-schema").withRequiredArg().ofType(String.class);
         OptionSpec<File> scriptsDirectoryOption = parser.accepts("scripts-dir").withRequiredArg().ofType(File.class);
+        OptionSpec<File> manifestFileOption = parser.accepts("scan-manifest").withRequiredArg().ofType(File.class);
+        OptionSpec<Integer> scanThreadsOption = parser.accepts("scan-threads").withRequiredArg().ofType(Integer.class);
+        OptionSpec<String> engineOption = parser.accepts("engine").withRequiredArg().ofType(String.class);
+        OptionSpec<Integer> parallelOption = parser.accepts("parallel").withRequiredArg().ofType(Integer.class);
+        OptionSpec<String> compileInvalidsOption = parser.accepts("compile-invalids").withRequiredArg().ofType(String.class);
+        OptionSpec<Integer> outputCapOption = parser.accepts("output-cap").withRequiredArg().ofType(Integer.class);
+        OptionSpec<Integer> reportSlowestOption = parser.accepts("report-slowest").withRequiredArg().ofType(Integer.class);
+        OptionSpec<String> showOutputOption = parser.accepts("show-output").withRequiredArg().ofType(String.class);
+        OptionSpec<File> logFileOption = parser.accepts("log-file").withRequiredArg().ofType(File.class);
+        OptionSpec<File> metricsJsonOption = parser.accepts("metrics-json").withRequiredArg().ofType(File.class);
+        OptionSpec<File> metricsPrometheusOption = parser.accepts("metrics-prom").withRequiredArg().ofType(File.class);
+        OptionSpec<File> targetsOption = parser.accepts("targets").withRequiredArg().ofType(File.class);
+        OptionSpec<Integer> parallelTargetsOption = parser.accepts("parallel-targets").withRequiredArg().ofType(Integer.class);
 
         OptionSpec execOption = parser.acceptsAll(asList("e", "exec"));
         OptionSpec genDdlOption = parser.acceptsAll(asList("d", "gen-ddl"));
+        OptionSpec fullDdlOption = parser.accepts("full-ddl");
         OptionSpec noColorOption = parser.acceptsAll(asList("n", "no-color"));
+        OptionSpec noManifestOption = parser.accepts("no-scan-manifest");
 
         OptionSet options = parser.parse(args);
 
-        if(!options.has(ownerSchemaOption) || !options.has(scriptsDirectoryOption)){
-            throw new IllegalArgumentException("--owner-schema and --scripts-dir are required parameters.");
+        if((!options.has(ownerSchemaOption) && !options.has(targetsOption)) || !options.has(scriptsDirectoryOption)){
+            throw new IllegalArgumentException("--owner-schema (or --targets) and --scripts-dir are required parameters.");
         }
 
-        ownerCredentials = DbCnnCredentials.create(options.valueOf(ownerSchemaOption));
-        if (options.has(userSchemaOption)) {
-            userCredentials = DbCnnCredentials.create(options.valueOf(userSchemaOption));
+        if (options.has(targetsOption)) {
+            if (options.has(ownerSchemaOption) || options.has(userSchemaOption)) {
+                throw new IllegalArgumentException("You can't specify both --targets and --owner-schema or --user-schema arguments." +
+                        " Schemas of targets are specified in the targets file.");
+            }
+            if (options.has(genDdlOption) || options.has(fullDdlOption) || options.has(reportSlowestOption)
+                    || options.has(showOutputOption)) {
+                throw new IllegalArgumentException("[--targets] can't be combined with --gen-ddl, --report-slowest" +
+                        " or --show-output.");
+            }
+            targetsFile = options.valueOf(targetsOption);
+            if (!targetsFile.isFile()) {
+                throw new IllegalArgumentException("Targets file [" + targetsFile.getAbsolutePath() + "] doesn't exists.");
+            }
         } else {
-            userCredentials = DbCnnCredentials.create(DbCnnCredentials.genUserCnnStr(ownerCredentials.getConnectionString()));
+            ownerCredentials = DbCnnCredentials.create(options.valueOf(ownerSchemaOption));
+            if (options.has(userSchemaOption)) {
+                userCredentials = DbCnnCredentials.create(options.valueOf(userSchemaOption));
+            } else {
+                userCredentials = DbCnnCredentials.create(DbCnnCredentials.genUserCnnStr(ownerCredentials.getConnectionString()));
+            }
+        }
+
+        if (options.has(parallelTargetsOption)) {
+            parallelTargets = options.valueOf(parallelTargetsOption);
+            if (parallelTargets < 1) {
+                throw new IllegalArgumentException("[--parallel-targets] should be a positive number");
+            }
         }
         scriptsDirectory = options.valueOf(scriptsDirectoryOption);
         if (!scriptsDirectory.exists() || !scriptsDirectory.isDirectory()) {
@@ -60,11 +121,74 @@ public class AppArguments {
                     " Can't find ddl directory");
         }
 
-        if (options.has(execOption) && options.has(genDdlOption)) {
+        if (options.has(noManifestOption)) {
+            manifestFile = null;
+        } else if (options.has(manifestFileOption)) {
+            manifestFile = options.valueOf(manifestFileOption);
+        } else {
+            manifestFile = new File(System.getProperty("user.home") + File.separator + SCMDB_HOME_DIRECTORY_NAME +
+                    File.separator + DigestUtils.sha1Hex(scriptsDirectory.getAbsolutePath()) + MANIFEST_FILE_EXTENSION);
+        }
+
+        if (options.has(scanThreadsOption)) {
+            scanThreads = options.valueOf(scanThreadsOption);
+            if (scanThreads < 1) {
+                throw new IllegalArgumentException("[--scan-threads] should be a positive number");
+            }
+        } else {
+            scanThreads = Runtime.getRuntime().availableProcessors();
+        }
+
+        if (options.has(parallelOption)) {
+            parallelScripts = options.valueOf(parallelOption);
+            if (parallelScripts < 1) {
+                throw new IllegalArgumentException("[--parallel] should be a positive number");
+            }
+        }
+
+        if (options.has(compileInvalidsOption)) {
+            compileInvalidsInterval = parseCompileInvalidsInterval(options.valueOf(compileInvalidsOption));
+        }
+
+        if (options.has(outputCapOption)) {
+            outputCaptureCap = options.valueOf(outputCapOption);
+            if (outputCaptureCap < 0) {
+                throw new IllegalArgumentException("[--output-cap] should be a number of chars or 0 to disable output capture");
+            }
+        }
+
+        if (options.has(reportSlowestOption)) {
+            reportSlowest = options.valueOf(reportSlowestOption);
+            if (reportSlowest < 1) {
+                throw new IllegalArgumentException("[--report-slowest] should be a positive number of scripts");
+            }
+            if (options.has(execOption) || options.has(genDdlOption) || options.has(fullDdlOption)) {
+                throw new IllegalArgumentException("[--report-slowest] can't be combined with --exec or --gen-ddl.");
+            }
+        }
+
+        if (options.has(showOutputOption)) {
+            showOutputScriptName = options.valueOf(showOutputOption);
+            if (options.has(execOption) || options.has(genDdlOption) || options.has(fullDdlOption)
+                    || options.has(reportSlowestOption)) {
+                throw new IllegalArgumentException("[--show-output] can't be combined with --exec, --gen-ddl or" +
+                        " --report-slowest.");
+            }
+        }
+
+        logFile = options.valueOf(logFileOption);
+        metricsJsonFile = options.valueOf(metricsJsonOption);
+        metricsPrometheusFile = options.valueOf(metricsPrometheusOption);
+
+        if (options.has(execOption) && (options.has(genDdlOption) || options.has(fullDdlOption))) {
             throw new IllegalArgumentException("You can't specify both --gen-ddl and --exec arguments. Choose one.");
         }
+        if (options.has(engineOption)) {
+            executionEngine = ExecutionEngine.getByName(options.valueOf(engineOption));
+        }
         executeScripts = options.has(execOption);
-        genDdl = options.has(genDdlOption);
+        fullDdl = options.has(fullDdlOption);
+        genDdl = options.has(genDdlOption) || fullDdl;
         useColorLogging = !options.has(noColorOption);
     }
 
@@ -84,6 +208,143 @@ public class AppArguments {
         this.ddlsDirectory = ddlsDirectory;
     }
 
+    public File getManifestFile() {
+        return manifestFile;
+    }
+
+    public void setManifestFile(File manifestFile) {
+        this.manifestFile = manifestFile;
+    }
+
+    public int getScanThreads() {
+        return scanThreads;
+    }
+
+    public void setScanThreads(int scanThreads) {
+        this.scanThreads = scanThreads;
+    }
+
+    private int parseCompileInvalidsInterval(String value) {
+        if ("each".equalsIgnoreCase(value)) {
+            return COMPILE_INVALIDS_EACH;
+        } else if ("end".equalsIgnoreCase(value)) {
+            return COMPILE_INVALIDS_AT_END;
+        }
+
+        try {
+            int interval = Integer.parseInt(value);
+            if (interval > 0) {
+                return interval;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("[--compile-invalids] should be [each], [end] or a positive number of scripts");
+    }
+
+    public int getParallelScripts() {
+        return parallelScripts;
+    }
+
+    public void setParallelScripts(int parallelScripts) {
+        this.parallelScripts = parallelScripts;
+    }
+
+    public int getCompileInvalidsInterval() {
+        return compileInvalidsInterval;
+    }
+
+    public void setCompileInvalidsInterval(int compileInvalidsInterval) {
+        this.compileInvalidsInterval = compileInvalidsInterval;
+    }
+
+    public boolean isCompileInvalidsDeferred() {
+        return compileInvalidsInterval != COMPILE_INVALIDS_EACH;
+    }
+
+    public int getOutputCaptureCap() {
+        return outputCaptureCap;
+    }
+
+    public void setOutputCaptureCap(int outputCaptureCap) {
+        this.outputCaptureCap = outputCaptureCap;
+    }
+
+    public File getLogFile() {
+        return logFile;
+    }
+
+    public void setLogFile(File logFile) {
+        this.logFile = logFile;
+    }
+
+    public int getReportSlowest() {
+        return reportSlowest;
+    }
+
+    public void setReportSlowest(int reportSlowest) {
+        this.reportSlowest = reportSlowest;
+    }
+
+    public String getShowOutputScriptName() {
+        return showOutputScriptName;
+    }
+
+    public void setShowOutputScriptName(String showOutputScriptName) {
+        this.showOutputScriptName = showOutputScriptName;
+    }
+
+    public File getMetricsJsonFile() {
+        return metricsJsonFile;
+    }
+
+    public void setMetricsJsonFile(File metricsJsonFile) {
+        this.metricsJsonFile = metricsJsonFile;
+    }
+
+    public File getMetricsPrometheusFile() {
+        return metricsPrometheusFile;
+    }
+
+    public void setMetricsPrometheusFile(File metricsPrometheusFile) {
+        this.metricsPrometheusFile = metricsPrometheusFile;
+    }
+
+    public File getTargetsFile() {
+        return targetsFile;
+    }
+
+    public void setTargetsFile(File targetsFile) {
+        this.targetsFile = targetsFile;
+    }
+
+    public int getParallelTargets() {
+        return parallelTargets;
+    }
+
+    public void setParallelTargets(int parallelTargets) {
+        this.parallelTargets = parallelTargets;
+    }
+
+    /**
+     * Name of the target updated by this context in a fan-out, null when a single schema is updated.
+     */
+    public String getTargetName() {
+        return targetName;
+    }
+
+    public void setTargetName(String targetName) {
+        this.targetName = targetName;
+    }
+
+    public ExecutionEngine getExecutionEngine() {
+        return executionEngine;
+    }
+
+    public void setExecutionEngine(ExecutionEngine executionEngine) {
+        this.executionEngine = executionEngine;
+    }
+
     public DbCnnCredentials getOwnerCredentials() {
         return ownerCredentials;
     }
@@ -108,6 +369,14 @@ public class AppArguments {
         this.genDdl = genDdl;
     }
 
+    public boolean isFullDdl() {
+        return fullDdl;
+    }
+
+    public void setFullDdl(boolean fullDdl) {
+        this.fullDdl = fullDdl;
+    }
+
     public boolean isExecuteScripts() {
         return executeScripts;
     }
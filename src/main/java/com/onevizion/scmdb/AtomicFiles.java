@@ -0,0 +1,45 @@
+package com.onevizion.scmdb;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Replaces files through a temp file in the same directory, so readers never see a partially written file. A file
+ * system which can't rename atomically gets a plain replace.
+ */
+public final class AtomicFiles {
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    private AtomicFiles() {}
+
+    public static void write(File file, byte[] content) throws IOException {
+        write(file, tempFile -> Files.write(tempFile, content));
+    }
+
+    public static void write(File file, ContentWriter contentWriter) throws IOException {
+        Path target = file.getAbsoluteFile().toPath();
+        Files.createDirectories(target.getParent());
+        Path tempFile = Files.createTempFile(target.getParent(), file.getName(), TEMP_FILE_SUFFIX);
+        try {
+            contentWriter.write(tempFile);
+            try {
+                Files.move(tempFile, target, ATOMIC_MOVE, REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, target, REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    @FunctionalInterface
+    public interface ContentWriter {
+        void write(Path tempFile) throws IOException;
+    }
+}
@@ -0,0 +1,17 @@
+package com.onevizion.scmdb;
+
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+/**
+ * Training run for the AppCDS archive built by the {@code appcds} profile. Boots the application context and loads
+ * the JDBC driver without connecting anywhere, so the archive holds the classes every run loads during startup.
+ */
+public class CdsTraining {
+    public static void main(String[] args) throws ClassNotFoundException {
+        try (ClassPathXmlApplicationContext ctx = Scmdb.createContext(new RunMetrics())) {
+            Class.forName("oracle.jdbc.OracleDriver");
+            Class.forName("oracle.jdbc.pool.OracleDataSource");
+            ctx.getBean(DbManager.class);
+        }
+    }
+}
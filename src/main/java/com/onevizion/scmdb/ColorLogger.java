@@ -1,41 +1,150 @@
 package com.onevizion.scmdb;
 
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.LoggerContext;
-import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.PatternLayout;
 import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
 import ch.qos.logback.core.ConsoleAppender;
+import ch.qos.logback.core.FileAppender;
+import ch.qos.logback.core.Layout;
+import ch.qos.logback.core.LayoutBase;
+import ch.qos.logback.core.OutputStreamAppender;
+import ch.qos.logback.core.encoder.LayoutWrappingEncoder;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
 
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public class ColorLogger {
+    public static final String TARGET_MDC_KEY = "target";
+
+    private static final int QUEUE_SIZE = 8192;
+    private static final int MAX_FLUSH_TIME_MS = 10000;
+    private static final String APP_LOGGER_NAME = "com.onevizion";
+    // "[<target>] " in front of every message logged while a target is updated, nothing otherwise
+    private static final String TARGET_PATTERN = "%replace([%X{" + TARGET_MDC_KEY + "}] ){'^\\[\\] $', ''}";
+
     private Logger logger = (Logger) LoggerFactory.getLogger("STDOUT");
-    private PatternLayoutEncoder encoder;
+    private LoggerContext loggerContext;
+    private final List<AsyncAppender> appenders = new ArrayList<>();
+    private String targetName;
 
     @Resource
     private AppArguments appArguments;
 
     public ColorLogger() {
-        LoggerContext loggerContext = logger.getLoggerContext();
+        loggerContext = logger.getLoggerContext();
         loggerContext.reset();
-
-        encoder = new PatternLayoutEncoder();
-        encoder.setContext(loggerContext);
-        encoder.setPattern("%msg%n");
-        encoder.start();
+        // the levels of logback.xml, the reset drops them together with its appender
+        loggerContext.getLogger(Logger.ROOT_LOGGER_NAME).setLevel(Level.WARN);
+        loggerContext.getLogger(APP_LOGGER_NAME).setLevel(Level.INFO);
+        logger.setLevel(Level.INFO);
 
         ConsoleAppender<ILoggingEvent> appender = new ConsoleAppender<>();
         appender.setContext(loggerContext);
-        appender.setEncoder(encoder);
+        ColorLayout colorLayout = new ColorLayout(createPatternLayouts());
+        colorLayout.setContext(loggerContext);
+        colorLayout.start();
+        appender.setEncoder(createEncoder(colorLayout));
         appender.start();
 
-        logger.addAppender(appender);
+        addAsyncAppender(appender);
+    }
+
+    private ColorLogger(ColorLogger parent, String targetName) {
+        logger = parent.logger;
+        loggerContext = parent.loggerContext;
+        appArguments = parent.appArguments;
+        this.targetName = targetName;
+    }
+
+    /**
+     * Returns a logger which puts the name of the target into the {@value #TARGET_MDC_KEY} MDC key of the threads it
+     * logs from, so the messages of the target's executors get its prefix as well. Logging is set up once per process,
+     * the returned logger owns no appenders and flushes nothing.
+     */
+    public ColorLogger forTarget(String targetName) {
+        return new ColorLogger(this, targetName);
+    }
+
+    public void addLogFile(File logFile) {
+        FileAppender<ILoggingEvent> appender = new FileAppender<>();
+        appender.setContext(loggerContext);
+        appender.setFile(logFile.getAbsolutePath());
+        appender.setAppend(true);
+        appender.setEncoder(createEncoder(createPatternLayout("%d{yyyy-MM-dd HH:mm:ss.SSS} %-5level " + TARGET_PATTERN
+                + "%msg%n")));
+        appender.start();
+
+        addAsyncAppender(appender);
+    }
+
+    private void addAsyncAppender(OutputStreamAppender<ILoggingEvent> appender) {
+        AsyncAppender asyncAppender = new AsyncAppender();
+        asyncAppender.setContext(loggerContext);
+        asyncAppender.setQueueSize(QUEUE_SIZE);
+        // messages are never dropped, a full queue blocks the caller instead
+        asyncAppender.setDiscardingThreshold(0);
+        asyncAppender.setNeverBlock(false);
+        asyncAppender.setMaxFlushTime(MAX_FLUSH_TIME_MS);
+        asyncAppender.addAppender(appender);
+        asyncAppender.start();
+
+        // class loggers of the app write to the same appenders
+        loggerContext.getLogger(Logger.ROOT_LOGGER_NAME).addAppender(asyncAppender);
+        appenders.add(asyncAppender);
+    }
+
+    private LayoutWrappingEncoder<ILoggingEvent> createEncoder(Layout<ILoggingEvent> layout) {
+        LayoutWrappingEncoder<ILoggingEvent> encoder = new LayoutWrappingEncoder<>();
+        encoder.setContext(loggerContext);
+        encoder.setLayout(layout);
+        encoder.start();
+        return encoder;
+    }
+
+    private Map<String, Layout<ILoggingEvent>> createPatternLayouts() {
+        Map<String, Layout<ILoggingEvent>> layouts = new HashMap<>();
+        for (Color color : Color.values()) {
+            layouts.put(color.getMarker().getName(), createPatternLayout("%" + color.getColor() + "(" + TARGET_PATTERN
+                    + "%message%n)"));
+        }
+        return layouts;
+    }
+
+    private PatternLayout createPatternLayout(String pattern) {
+        PatternLayout layout = new PatternLayout();
+        layout.setContext(loggerContext);
+        layout.setPattern(pattern);
+        layout.start();
+        return layout;
+    }
+
+    @PreDestroy
+    public void flush() {
+        for (Appender<ILoggingEvent> appender : appenders) {
+            appender.stop();
+        }
     }
 
     public void info(String msg, Color color, Object... argArray) {
-        setColor(color);
-        logger.info(msg, argArray);
+        String previousTargetName = putTargetName();
+        try {
+            logger.info(getMarker(color), msg, argArray);
+        } finally {
+            restoreTargetName(previousTargetName);
+        }
     }
 
     public void info(String msg, Object... argArray) {
@@ -43,20 +152,58 @@ public class ColorLogger {
     }
 
     public void warn(String msg, Color color, Object... argArray) {
-        setColor(color);
-        logger.warn(msg, argArray);
+        String previousTargetName = putTargetName();
+        try {
+            logger.warn(getMarker(color), msg, argArray);
+        } finally {
+            restoreTargetName(previousTargetName);
+        }
     }
 
     public void error(String msg, Object... argArray) {
-        setColor(Color.RED);
-        logger.error(msg, argArray);
+        String previousTargetName = putTargetName();
+        try {
+            logger.error(getMarker(Color.RED), msg, argArray);
+        } finally {
+            restoreTargetName(previousTargetName);
+        }
+    }
+
+    private String putTargetName() {
+        String previousTargetName = MDC.get(TARGET_MDC_KEY);
+        if (targetName != null) {
+            MDC.put(TARGET_MDC_KEY, targetName);
+        }
+        return previousTargetName;
     }
 
-    private void setColor(Color color) {
-        if (appArguments.isUseColorLogging()) {
-            encoder.stop();
-            encoder.setPattern("%" + color.getColor() + "(%message%n)");
-            encoder.start();
+    private void restoreTargetName(String previousTargetName) {
+        if (targetName == null) {
+            return;
+        }
+        if (previousTargetName == null) {
+            MDC.remove(TARGET_MDC_KEY);
+        } else {
+            MDC.put(TARGET_MDC_KEY, previousTargetName);
+        }
+    }
+
+    private Marker getMarker(Color color) {
+        return appArguments.isUseColorLogging() ? color.getMarker() : null;
+    }
+
+    private class ColorLayout extends LayoutBase<ILoggingEvent> {
+        private final Map<String, Layout<ILoggingEvent>> colorLayouts;
+        private final Layout<ILoggingEvent> plainLayout = createPatternLayout(TARGET_PATTERN + "%msg%n");
+
+        private ColorLayout(Map<String, Layout<ILoggingEvent>> colorLayouts) {
+            this.colorLayouts = colorLayouts;
+        }
+
+        @Override
+        public String doLayout(ILoggingEvent event) {
+            Layout<ILoggingEvent> layout = event.getMarker() == null ? null : colorLayouts.get(event.getMarker().getName());
+            return (layout == null ? plainLayout : layout).doLayout(event);
         }
     }
 
@@ -68,13 +215,19 @@ public class ColorLogger {
         GREEN("green");
 
         private String color;
+        private Marker marker;
 
         Color(String color) {
             this.color = color;
+            this.marker = MarkerFactory.getMarker("scmdb-" + color);
         }
 
         public String getColor() {
             return color;
         }
+
+        public Marker getMarker() {
+            return marker;
+        }
     }
 }
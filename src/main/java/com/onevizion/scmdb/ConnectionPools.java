@@ -0,0 +1,25 @@
+package com.onevizion.scmdb;
+
+import oracle.ucp.UniversalConnectionPoolException;
+import oracle.ucp.admin.UniversalConnectionPoolManagerImpl;
+import oracle.ucp.jdbc.PoolDataSourceImpl;
+
+/**
+ * UCP keeps pools and their connections until the process exits. Pools of a fan-out target are destroyed as soon as
+ * the target is updated.
+ */
+public final class ConnectionPools {
+    private ConnectionPools() {}
+
+    public static void destroy(PoolDataSourceImpl dataSource) {
+        if (dataSource == null || dataSource.getConnectionPoolName() == null) {
+            return;
+        }
+        try {
+            UniversalConnectionPoolManagerImpl.getUniversalConnectionPoolManager()
+                                              .destroyConnectionPool(dataSource.getConnectionPoolName());
+        } catch (UniversalConnectionPoolException e) {
+            // the pool is created by the first connection, a data source which never connected has no pool
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.onevizion.scmdb;
 
 import com.onevizion.scmdb.facade.DbScriptFacade;
 import com.onevizion.scmdb.facade.DdlFacade;
+import com.onevizion.scmdb.vo.ExecutionEngine;
 import com.onevizion.scmdb.vo.ScriptStatus;
 import com.onevizion.scmdb.vo.ScriptType;
 import com.onevizion.scmdb.vo.SqlScript;
@@ -11,6 +12,7 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.sql.SQLException;
+import java.text.SimpleDateFormat;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
@@ -18,10 +20,13 @@ import java.util.stream.Collectors;
 
 import static com.onevizion.scmdb.ColorLogger.Color.CYAN;
 import static com.onevizion.scmdb.ColorLogger.Color.GREEN;
+import static com.onevizion.scmdb.ColorLogger.Color.YELLOW;
 import static com.onevizion.scmdb.vo.ScriptType.ROLLBACK;
 
 public class DbManager {
     private static final String SCRIPT_EXECUTION_ERROR_MESSAGE = "Fix and execute manually script [{}] and then run SCMDB again to execute other scripts.";
+    private static final String SLOWEST_SCRIPTS_FORMAT = "%-60s %-19s %12s %12s %12s %9s";
+    private static final String SLOWEST_SCRIPTS_DATE_FORMAT = "yyyy-MM-dd HH:mm:ss";
     private static final String CANT_RUN_SQL_ERROR_MESSAGE = "Oracle SQLcl executable is not found. Please download it and make sure bin/sql is in your path";
 
     @Resource
@@ -36,37 +41,57 @@ public class DbManager {
     @Resource
     private SqlScriptExecutor scriptExecutor;
 
+    @Resource
+    private ScriptScheduler scriptScheduler;
+
+    @Resource
+    private InvalidObjectsCompiler invalidObjectsCompiler;
+
     @Resource
     private ColorLogger logger;
 
+    @Resource
+    private RunMetrics runMetrics;
+
+    private volatile boolean hasUnsavedScripts;
+    private boolean isSqlclChecked;
+
     public void updateDb() {
         logger.info("SCMDB {}", getClass().getPackage().getImplementationVersion());
 
-        try {
-            scriptExecutor.printVersion();
-        } catch (IOException e) {
-            logger.error("Cannot find SQLcl, make sure SQLcl is available.\n{}", e.getMessage());
-            System.exit(0);
+        if (appArguments.getExecutionEngine() == ExecutionEngine.JDBC) {
+            logger.info("Scripts are executed in-process through JDBC");
         }
 
-        try {
-            scriptsFacade.checkDbConnection();
-        } catch (SQLException e) {
-            logger.error("Cannot establish DB connection.\n{}", e.getMessage());
-            System.exit(0);
-        }
+        checkDbConnection();
 
         if (!checkAndCreateDbScriptTable()) {
             logger.info("Can't create DB objects used by SCMDB:");
             logger.info("Please execute script \"src/main/resources/create.sql\" manually");
-        } else if (scriptsFacade.isFirstRun()) {
+            logger.info("\nSCMDB complete");
+            return;
+        }
+        scriptsFacade.upgradeScriptTable();
+        logStartupPhases();
+
+        scriptsFacade.recoverJournal();
+        if (scriptsFacade.isFirstRun()) {
             scriptsFacade.createAllFromDirectory();
+            scriptsFacade.saveFingerprint();
             logger.info("It's your first run of SCMDB. SCMDB was initialized.");
+        } else if (scriptsFacade.isUnchangedSinceLastRun()) {
+            scriptsFacade.cleanExecDir();
+            logger.info("No scripts were changed since the last run");
         } else {
             scriptsFacade.cleanExecDir();
             checkUpdatedScripts();
             checkDeletedScripts();
             checkNewScripts();
+            invalidObjectsCompiler.compilePending();
+            scriptsFacade.flushJournal();
+            if (!hasUnsavedScripts) {
+                scriptsFacade.saveFingerprint();
+            }
         }
         logger.info("\nSCMDB complete");
     }
@@ -91,14 +116,24 @@ public class DbManager {
         if (appArguments.isExecuteScripts()) {
             logger.info("Scripts to be executed:");
             newCommitScripts.forEach(script -> logger.info(script.getFile().getAbsolutePath()));
+            if (appArguments.getParallelScripts() > 1) {
+                if (!scriptScheduler.execute(newCommitScripts, this::executeAndSaveScript)) {
+                    invalidObjectsCompiler.compilePending();
+                    throw new RunStoppedException("Scripts were executed with errors");
+                }
+                return;
+            }
             for (SqlScript script : newCommitScripts) {
                 executeScript(script);
                 if (script.getStatus() != ScriptStatus.COMMAND_EXEC_FAILURE) {
                     scriptsFacade.create(script);
+                } else {
+                    hasUnsavedScripts = true;
                 }
 
                 if (script.getStatus() == ScriptStatus.EXECUTED_WITH_ERRORS) {
-                    System.exit(0);
+                    invalidObjectsCompiler.compilePending();
+                    throw new RunStoppedException("Script [" + script.getName() + "] was executed with errors");
                 }
             }
         } else {
@@ -109,6 +144,17 @@ public class DbManager {
         }
     }
 
+    // a script which couldn't be started is left unsaved and the run goes on, like the sequential run does
+    private boolean executeAndSaveScript(SqlScript script) {
+        executeScript(script);
+        if (script.getStatus() != ScriptStatus.COMMAND_EXEC_FAILURE) {
+            scriptsFacade.create(script);
+        } else {
+            hasUnsavedScripts = true;
+        }
+        return script.getStatus() != ScriptStatus.EXECUTED_WITH_ERRORS;
+    }
+
     private void checkDeletedScripts() {
         Map<String, SqlScript> deletedScripts = scriptsFacade.getDeletedScriptsMap();
         List<SqlScript> rollbacksToExec = deletedScripts.values().stream()
@@ -123,7 +169,11 @@ public class DbManager {
 
         boolean executeRollbacks = false;
 
-        if (appArguments.isExecuteScripts()) {
+        if (appArguments.isExecuteScripts() && appArguments.getTargetName() != null) {
+            // targets of a fan-out are updated concurrently, nobody answers the question
+            logger.info("{} rollbacks should be executed, they are never executed without confirmation", YELLOW,
+                    rollbacksToExec.size());
+        } else if (appArguments.isExecuteScripts()) {
             logger.info("Do you really want to execute {} rollbacks? ", GREEN, rollbacksToExec.size());
             logger.info("Type [no] and rollbacks will be copied to EXECUTE_ME directory and marked as executed. Execute them manually and run scmdb again to execute new scripts.", GREEN);
             logger.info("Type [yes] to continue and execute all rollbacks", GREEN);
@@ -131,7 +181,7 @@ public class DbManager {
         }
 
         if (executeRollbacks) {
-            executeRollbacks(deletedScripts, rollbacksToExec);
+            runMetrics.time(RunMetrics.ROLLBACKS_PHASE, () -> executeRollbacks(deletedScripts, rollbacksToExec));
             scriptsFacade.deleteAll(deletedScripts.values());
         } else {
             logger.info("At first you should execute following rollbacks to revert changes of deleted scripts:");
@@ -140,7 +190,7 @@ public class DbManager {
             scriptsFacade.deleteAll(deletedScripts.values());
 
             if (appArguments.isExecuteScripts()) {
-                System.exit(0);
+                throw new RunStoppedException("Rollbacks should be executed manually");
             }
         }
     }
@@ -159,7 +209,8 @@ public class DbManager {
                 deletedScripts.keySet().remove(rollback.getCommitName());
 
                 if (rollback.getStatus() == ScriptStatus.EXECUTED_WITH_ERRORS) {
-                    System.exit(0);
+                    invalidObjectsCompiler.compilePending();
+                    throw new RunStoppedException("Rollback [" + rollback.getName() + "] was executed with errors");
                 }
             }
         }
@@ -190,8 +241,15 @@ public class DbManager {
     }
 
     private void executeScript(SqlScript script) {
+        checkSqlcl();
         logger.info("\nExecuting script: [{}]", GREEN, script.getName());
+        long executeStart = System.nanoTime();
         int exitCode = scriptExecutor.execute(script);
+        runMetrics.recordPhase(RunMetrics.EXECUTE_PHASE, executeStart);
+        runMetrics.increment(RunMetrics.SCRIPTS_EXECUTED);
+        if (exitCode != 0) {
+            runMetrics.increment(RunMetrics.SCRIPTS_FAILED);
+        }
         if (exitCode == 0) {
             script.setStatus(ScriptStatus.EXECUTED);
         } else if (exitCode == 2) {
@@ -200,6 +258,11 @@ public class DbManager {
             script.setStatus(ScriptStatus.EXECUTED_WITH_ERRORS);
         }
 
+        if (script.getErrorCount() > 0 || script.getWarningCount() > 0 || script.getInvalidObjectCount() > 0) {
+            logger.info("Script [{}] output: {} ORA- errors, {} warnings, {} invalid objects", YELLOW, script.getName(),
+                    script.getErrorCount(), script.getWarningCount(), script.getInvalidObjectCount());
+        }
+
         if (exitCode == 2) {
             logger.error(CANT_RUN_SQL_ERROR_MESSAGE);
         } else if (exitCode != 0) {
@@ -207,14 +270,71 @@ public class DbManager {
         }
     }
 
+    public void reportSlowestScripts() {
+        checkDbConnection();
+        if (!scriptsFacade.isScriptTableExist()) {
+            logger.info("SCMDB wasn't run against this schema yet");
+            return;
+        }
+        scriptsFacade.upgradeScriptTable();
+
+        List<SqlScript> scripts = scriptsFacade.getSlowestScripts(appArguments.getReportSlowest());
+        if (scripts.isEmpty()) {
+            logger.info("No script execution was recorded yet");
+            return;
+        }
+        logger.info(String.format(SLOWEST_SCRIPTS_FORMAT, "Script", "Started", "Total ms", "Overhead ms", "Recompile ms",
+                "Exit code"), GREEN);
+        SimpleDateFormat dateFormat = new SimpleDateFormat(SLOWEST_SCRIPTS_DATE_FORMAT);
+        for (SqlScript script : scripts) {
+            logger.info(String.format(SLOWEST_SCRIPTS_FORMAT, script.getName(),
+                    script.getExecStart() == null ? "" : dateFormat.format(script.getExecStart()),
+                    script.getExecDurationMs(), toText(script.getExecOverheadMs()), toText(script.getRecompileMs()),
+                    toText(script.getExitCode())));
+        }
+    }
+
+    public void showScriptOutput() {
+        checkDbConnection();
+        if (!scriptsFacade.isScriptTableExist()) {
+            logger.info("SCMDB wasn't run against this schema yet");
+            return;
+        }
+        scriptsFacade.upgradeScriptTable();
+
+        String name = appArguments.getShowOutputScriptName();
+        SqlScript script = scriptsFacade.getScriptOutput(name);
+        if (script == null) {
+            logger.info("Script [{}] wasn't executed against this schema", name);
+        } else if (script.getOutput() == null) {
+            logger.info("No output was captured for script [{}]", name);
+        } else {
+            logger.info("Output of script [{}], exit code {}:", GREEN, name, toText(script.getExitCode()));
+            logger.info("{}", OutputCapture.decompress(script.getOutput()));
+        }
+    }
+
+    private String toText(Number value) {
+        return value == null ? "" : value.toString();
+    }
+
     public void generateDdl() {
-        logger.info("Extracting DDL for new and updated scripts");
+        if (appArguments.isFullDdl()) {
+            logger.info("Extracting DDL for all objects of the schema");
+        } else {
+            logger.info("Extracting DDL for new and updated scripts");
+        }
 
-        try {
-            scriptsFacade.checkDbConnection();
-        } catch (SQLException e) {
-            logger.error("Cannot establish DB connection.\n{}", e.getMessage());
-            System.exit(0);
+        checkDbConnection();
+        logStartupPhases();
+        // changes of the last run which weren't saved yet are saved first, new and updated scripts are found by them
+        if (scriptsFacade.isScriptTableExist()) {
+            scriptsFacade.recoverJournal();
+        }
+
+        if (appArguments.isFullDdl()) {
+            runMetrics.time(RunMetrics.DDL_PHASE, ddlFacade::generateFullDdl);
+            return;
         }
 
         List<SqlScript> scripts = scriptsFacade.getNewScripts();
@@ -224,10 +344,49 @@ public class DbManager {
                                                  .filter(script -> script.getType() == ScriptType.COMMIT)
                                                  .filter(script -> !script.isUserSchemaScript())
                                                  .collect(Collectors.toList());
-        ddlFacade.generateDdl(scriptsToGenDdl);
+        runMetrics.time(RunMetrics.DDL_PHASE, () -> ddlFacade.generateDdl(scriptsToGenDdl));
     }
 
     private boolean checkAndCreateDbScriptTable() {
-        return scriptsFacade.isScriptTableExist() || scriptExecutor.createDbScriptTable();
+        if (scriptsFacade.isScriptTableExist()) {
+            return true;
+        }
+        checkSqlcl();
+        return scriptExecutor.createDbScriptTable();
+    }
+
+    private void checkDbConnection() {
+        long connectionStart = System.nanoTime();
+        try {
+            scriptsFacade.checkDbConnection();
+        } catch (SQLException e) {
+            logger.error("Cannot establish DB connection.\n{}", e.getMessage());
+            throw new RunStoppedException("Cannot establish DB connection");
+        }
+        runMetrics.recordPhase(RunMetrics.CONNECTION_PHASE, connectionStart);
+    }
+
+    /**
+     * Probes SQLcl before the first script is executed by it. Runs which execute nothing or use the JDBC engine
+     * don't start SQLcl at all.
+     */
+    private synchronized void checkSqlcl() {
+        if (isSqlclChecked || appArguments.getExecutionEngine() == ExecutionEngine.JDBC) {
+            return;
+        }
+        long probeStart = System.nanoTime();
+        try {
+            scriptExecutor.printVersion();
+        } catch (IOException e) {
+            logger.error("Cannot find SQLcl, make sure SQLcl is available.\n{}", e.getMessage());
+            throw new RunStoppedException("Cannot find SQLcl");
+        }
+        runMetrics.recordPhase(RunMetrics.SQLCL_PROBE_PHASE, probeStart);
+        isSqlclChecked = true;
+    }
+
+    private void logStartupPhases() {
+        scriptsFacade.awaitScan();
+        logger.info("Startup: {}", runMetrics.formatPhases());
     }
 }
@@ -0,0 +1,70 @@
+package com.onevizion.scmdb;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+
+import static com.onevizion.scmdb.ColorLogger.Color.GREEN;
+
+/**
+ * Writes DDL files only when their content changes. A changed file is replaced atomically, see {@link AtomicFiles}.
+ */
+@Component
+public class DdlFileWriter {
+    @Resource
+    private ColorLogger logger;
+
+    @Resource
+    private RunMetrics runMetrics;
+
+    public void write(File file, String ddl) {
+        byte[] content = ddl.getBytes(StandardCharsets.UTF_8);
+        if (isSameContent(file, content)) {
+            runMetrics.increment(RunMetrics.DDL_FILES_UNCHANGED);
+            return;
+        }
+
+        try {
+            AtomicFiles.write(file, content);
+        } catch (IOException e) {
+            throw new RuntimeException("Can't write ddl to file[" + file.getAbsolutePath() + "]", e);
+        }
+        runMetrics.increment(RunMetrics.DDL_FILES_WRITTEN);
+    }
+
+    public void delete(File file) {
+        try {
+            FileUtils.forceDeleteOnExit(file);
+        } catch (IOException e) {
+            throw new RuntimeException("Can't delete ddl file [" + file.getAbsolutePath() + "]", e);
+        }
+        runMetrics.increment(RunMetrics.DDL_FILES_DELETED);
+    }
+
+    public void logSummary() {
+        Map<String, Long> counters = runMetrics.getCounters();
+        logger.info("DDL files: {} written, {} unchanged, {} deleted", GREEN,
+                counters.getOrDefault(RunMetrics.DDL_FILES_WRITTEN, 0L),
+                counters.getOrDefault(RunMetrics.DDL_FILES_UNCHANGED, 0L),
+                counters.getOrDefault(RunMetrics.DDL_FILES_DELETED, 0L));
+    }
+
+    private boolean isSameContent(File file, byte[] content) {
+        if (!file.isFile() || file.length() != content.length) {
+            return false;
+        }
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            return DigestUtils.sha1Hex(in).equals(DigestUtils.sha1Hex(content));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,572 @@
+package com.onevizion.scmdb;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Formats DDL returned by dbms_metadata. Tables, views, packages, indexes and triggers are formatted in one pass over
+ * the DDL: every rule of the former regex replacements is a stage which rewrites chars while they stream through it,
+ * so the text is read once and copied once to the output. Small comment and sequence DDL use precompiled patterns.
+ */
+public class DdlFormatter {
+    private static final int READ_BUFFER_SIZE = 8192;
+    private static final String CRLF = "\r\n";
+
+    private static final Pattern COMMENT_ON_TABLE_ANY_CASE_PATTERN = Pattern.compile("COMMENT ON TABLE.+",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern COMMENT_ON_TABLE_PATTERN = Pattern.compile("COMMENT ON TABLE.+");
+    private static final Pattern LF_PATTERN = Pattern.compile("\\n");
+    private static final Pattern SPACES_BEFORE_COMMENT_PATTERN = Pattern.compile("\\s+COMMENT");
+    private static final Pattern COMMENT_PATTERN = Pattern.compile("COMMENT");
+    private static final Pattern SPACES_BEFORE_LAST_SEMICOLON_PATTERN = Pattern.compile("\\s+;$");
+
+    private final String schemaToken;
+    private final Pattern schemaPattern;
+
+    public DdlFormatter(String schemaName) {
+        schemaToken = "\"" + schemaName.toUpperCase() + "\"";
+        schemaPattern = Pattern.compile(schemaToken + ".");
+    }
+
+    public void formatPackage(Reader ddl, StringBuilder out) {
+        Stage stages = new CrLf(new Sink(out));
+        stages = new TrailingSpacesBefore('/', "\n/", stages);
+        format(ddl, new SchemaStrip(new Trim(stages)));
+    }
+
+    public void formatTable(Reader ddl, StringBuilder out) {
+        Stage stages = new JoinReferences(new Sink(out));
+        stages = new CrLf(new TabExpand(stages));
+        stages = new SpacesBefore(')', "\n)", true, stages);
+        stages = new FirstLfSpacesBefore('(', "(\n", stages);
+        stages = new SpacesBefore(';', ";", false, stages);
+        format(ddl, new SchemaStrip(new Trim(stages)));
+    }
+
+    public void formatView(Reader ddl, StringBuilder out) {
+        Stage stages = new CrLf(new Sink(out));
+        stages = new SpacesBefore(';', ";", false, stages);
+        format(ddl, new SchemaStrip(new Trim(stages)));
+    }
+
+    public void formatIndex(Reader ddl, String prefix, StringBuilder out) {
+        Stage stages = new TrailingSpacesBefore(';', ";", new Sink(out));
+        stages.accept(prefix);
+        format(ddl, new SchemaStrip(new Trim(stages)));
+    }
+
+    public void formatTrigger(Reader ddl, StringBuilder out) {
+        Stage stages = new RemoveFirstTriggerEnable(new Sink(out));
+        stages = new SpacesBefore('/', "\r\n/", false, stages);
+        stages.accept(CRLF);
+        format(ddl, new SchemaStrip(new Trim(new CrLf(stages))));
+    }
+
+    public void formatTableComment(String ddl, StringBuilder out) {
+        ddl = removeSchemaName(ddl).trim();
+
+        Matcher matcher = COMMENT_ON_TABLE_ANY_CASE_PATTERN.matcher(ddl);
+        if (matcher.find()) {
+            String commentStmt = matcher.group();
+            ddl = COMMENT_ON_TABLE_PATTERN.matcher(ddl).replaceFirst("");
+            ddl = commentStmt + CRLF + ddl;
+        }
+
+        ddl = LF_PATTERN.matcher(ddl).replaceAll("");
+        ddl = SPACES_BEFORE_COMMENT_PATTERN.matcher(ddl).replaceAll("COMMENT");
+        ddl = COMMENT_PATTERN.matcher(ddl).replaceAll("\r\nCOMMENT");
+        out.append(CRLF).append(CRLF).append(ddl.trim());
+    }
+
+    public void formatViewComment(String ddl, StringBuilder out) {
+        ddl = SPACES_BEFORE_COMMENT_PATTERN.matcher(removeSchemaName(ddl)).replaceAll("\r\nCOMMENT");
+        out.append(COMMENT_PATTERN.matcher(ddl).replaceFirst("\r\nCOMMENT"));
+    }
+
+    /**
+     * Expects DDL without the schema name, sequences are excluded by their names in it.
+     */
+    public void formatSequence(String ddl, StringBuilder out) {
+        ddl = CRLF + ddl.trim();
+        int index = ddl.lastIndexOf("\"");
+        if (index != -1) {
+            out.append(ddl, 0, index + 1).append(';');
+        } else {
+            out.append(SPACES_BEFORE_LAST_SEMICOLON_PATTERN.matcher(ddl).replaceAll(";"));
+        }
+    }
+
+    public String removeSchemaName(String ddl) {
+        return schemaPattern.matcher(ddl).replaceAll("");
+    }
+
+    private void format(Reader ddl, Stage stages) {
+        char[] buffer = new char[READ_BUFFER_SIZE];
+        try {
+            int length;
+            while ((length = ddl.read(buffer)) != -1) {
+                for (int i = 0; i < length; i++) {
+                    stages.accept(buffer[i]);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Can't read DDL", e);
+        }
+        stages.finish();
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    private static boolean isWordChar(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_';
+    }
+
+    private abstract static class Stage {
+        private final Stage next;
+
+        private Stage(Stage next) {
+            this.next = next;
+        }
+
+        abstract void accept(char c);
+
+        void accept(CharSequence chars) {
+            for (int i = 0; i < chars.length(); i++) {
+                accept(chars.charAt(i));
+            }
+        }
+
+        void finish() {
+            next.finish();
+        }
+
+        void emit(char c) {
+            next.accept(c);
+        }
+
+        void emit(CharSequence chars) {
+            next.accept(chars);
+        }
+    }
+
+    private static class Sink extends Stage {
+        private final StringBuilder out;
+
+        private Sink(StringBuilder out) {
+            super(null);
+            this.out = out;
+        }
+
+        @Override
+        void accept(char c) {
+            out.append(c);
+        }
+
+        @Override
+        void accept(CharSequence chars) {
+            out.append(chars);
+        }
+
+        @Override
+        void finish() {}
+    }
+
+    /**
+     * Removes the quoted schema name and the char after it, as {@code "SCHEMA".} does.
+     */
+    private class SchemaStrip extends Stage {
+        private int matched;
+
+        private SchemaStrip(Stage next) {
+            super(next);
+        }
+
+        @Override
+        void accept(char c) {
+            if (matched == schemaToken.length()) {
+                matched = 0;
+                if (isLineTerminator(c)) {
+                    emit(schemaToken);
+                    emit(c);
+                }
+            } else if (c == schemaToken.charAt(matched)) {
+                matched++;
+            } else {
+                emit(schemaToken.subSequence(0, matched));
+                matched = c == schemaToken.charAt(0) ? 1 : 0;
+                if (matched == 0) {
+                    emit(c);
+                }
+            }
+        }
+
+        @Override
+        void finish() {
+            emit(schemaToken.subSequence(0, matched));
+            super.finish();
+        }
+    }
+
+    /**
+     * Drops leading and trailing chars up to the space, as {@link String#trim()} does.
+     */
+    private static class Trim extends Stage {
+        private final StringBuilder trailing = new StringBuilder();
+        private boolean isStarted;
+
+        private Trim(Stage next) {
+            super(next);
+        }
+
+        @Override
+        void accept(char c) {
+            if (c <= ' ') {
+                if (isStarted) {
+                    trailing.append(c);
+                }
+            } else {
+                isStarted = true;
+                emit(trailing);
+                trailing.setLength(0);
+                emit(c);
+            }
+        }
+    }
+
+    /**
+     * Replaces spaces followed by the target char, as {@code \s+<target>} does.
+     */
+    private static class SpacesBefore extends Stage {
+        private final char target;
+        private final String replacement;
+        private final boolean isFirstOnly;
+        private final StringBuilder spaces = new StringBuilder();
+        private boolean isDone;
+
+        private SpacesBefore(char target, String replacement, boolean isFirstOnly, Stage next) {
+            super(next);
+            this.target = target;
+            this.replacement = replacement;
+            this.isFirstOnly = isFirstOnly;
+        }
+
+        @Override
+        void accept(char c) {
+            if (isDone) {
+                emit(c);
+            } else if (isSpace(c)) {
+                spaces.append(c);
+            } else if (c == target && spaces.length() > 0) {
+                spaces.setLength(0);
+                emit(replacement);
+                isDone = isFirstOnly;
+            } else {
+                emit(spaces);
+                spaces.setLength(0);
+                emit(c);
+            }
+        }
+
+        @Override
+        void finish() {
+            emit(spaces);
+            super.finish();
+        }
+    }
+
+    /**
+     * Replaces spaces followed by the target char at the end of the text, as {@code \s+<target>$} does. Like
+     * {@code $}, the end may be followed by one final line terminator.
+     */
+    private static class TrailingSpacesBefore extends Stage {
+        private final char target;
+        private final String replacement;
+        private final StringBuilder spaces = new StringBuilder();
+        private final StringBuilder terminator = new StringBuilder();
+        private boolean isTargetPending;
+
+        private TrailingSpacesBefore(char target, String replacement, Stage next) {
+            super(next);
+            this.target = target;
+            this.replacement = replacement;
+        }
+
+        @Override
+        void accept(char c) {
+            if (isTargetPending) {
+                if (terminator.length() == 0 && isLineTerminator(c)
+                        || terminator.length() == 1 && terminator.charAt(0) == '\r' && c == '\n') {
+                    terminator.append(c);
+                    return;
+                }
+                isTargetPending = false;
+                emit(spaces);
+                spaces.setLength(0);
+                emit(target);
+                String pendingTerminator = terminator.toString();
+                terminator.setLength(0);
+                accept(pendingTerminator);
+            }
+
+            if (isSpace(c)) {
+                spaces.append(c);
+            } else if (c == target && spaces.length() > 0) {
+                isTargetPending = true;
+            } else {
+                emit(spaces);
+                spaces.setLength(0);
+                emit(c);
+            }
+        }
+
+        @Override
+        void finish() {
+            if (isTargetPending) {
+                emit(replacement);
+                emit(terminator);
+            } else {
+                emit(spaces);
+            }
+            super.finish();
+        }
+    }
+
+    /**
+     * Replaces the first line feed followed by spaces and the target char, as the first match of
+     * {@code \n\s+<target>} does.
+     */
+    private static class FirstLfSpacesBefore extends Stage {
+        private final char target;
+        private final String replacement;
+        private final StringBuilder spaces = new StringBuilder();
+        private boolean isDone;
+
+        private FirstLfSpacesBefore(char target, String replacement, Stage next) {
+            super(next);
+            this.target = target;
+            this.replacement = replacement;
+        }
+
+        @Override
+        void accept(char c) {
+            if (isDone) {
+                emit(c);
+                return;
+            }
+            if (isSpace(c)) {
+                spaces.append(c);
+                return;
+            }
+
+            int lfIndex = spaces.indexOf("\n");
+            if (c == target && lfIndex != -1 && lfIndex < spaces.length() - 1) {
+                emit(spaces.subSequence(0, lfIndex));
+                emit(replacement);
+                isDone = true;
+            } else {
+                emit(spaces);
+                emit(c);
+            }
+            spaces.setLength(0);
+        }
+
+        @Override
+        void finish() {
+            emit(spaces);
+            super.finish();
+        }
+    }
+
+    private static class CrLf extends Stage {
+        private CrLf(Stage next) {
+            super(next);
+        }
+
+        @Override
+        void accept(char c) {
+            if (c == '\n') {
+                emit(CRLF);
+            } else {
+                emit(c);
+            }
+        }
+    }
+
+    private static class TabExpand extends Stage {
+        private TabExpand(Stage next) {
+            super(next);
+        }
+
+        @Override
+        void accept(char c) {
+            if (c == '\t') {
+                emit("    ");
+            } else {
+                emit(c);
+            }
+        }
+    }
+
+    /**
+     * Moves REFERENCES clauses to the line of their column, as {@code \r\n\s+REFERENCES\s} replaced with
+     * {@code " REFERENCES "} does.
+     */
+    private static class JoinReferences extends Stage {
+        private static final String KEYWORD = "REFERENCES";
+
+        private final StringBuilder spaces = new StringBuilder();
+        private int crLfIndex = -1;
+        private int matched;
+
+        private JoinReferences(Stage next) {
+            super(next);
+        }
+
+        @Override
+        void accept(char c) {
+            if (crLfIndex != -1) {
+                if (matched < KEYWORD.length() && c == KEYWORD.charAt(matched)) {
+                    matched++;
+                    return;
+                }
+                if (matched == KEYWORD.length() && isSpace(c)) {
+                    emit(spaces.subSequence(0, crLfIndex));
+                    emit(" " + KEYWORD + " ");
+                    reset();
+                    return;
+                }
+                emit(spaces);
+                emit(KEYWORD.subSequence(0, matched));
+                reset();
+            }
+
+            if (isSpace(c)) {
+                spaces.append(c);
+                return;
+            }
+            if (c == KEYWORD.charAt(0)) {
+                crLfIndex = findCrLf();
+                if (crLfIndex != -1) {
+                    matched = 1;
+                    return;
+                }
+            }
+            emit(spaces);
+            spaces.setLength(0);
+            emit(c);
+        }
+
+        private int findCrLf() {
+            for (int i = 0; i < spaces.length() - 2; i++) {
+                if (spaces.charAt(i) == '\r' && spaces.charAt(i + 1) == '\n') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void reset() {
+            spaces.setLength(0);
+            crLfIndex = -1;
+            matched = 0;
+        }
+
+        @Override
+        void finish() {
+            emit(spaces);
+            if (crLfIndex != -1) {
+                emit(KEYWORD.subSequence(0, matched));
+            }
+            super.finish();
+        }
+    }
+
+    /**
+     * Removes the first {@code ALTER TRIGGER "<name>" ENABLE;} statement.
+     */
+    private static class RemoveFirstTriggerEnable extends Stage {
+        private static final String PREFIX = "ALTER TRIGGER \"";
+        private static final String SUFFIX = "\" ENABLE;";
+
+        private final StringBuilder pending = new StringBuilder();
+        private boolean isDone;
+
+        private RemoveFirstTriggerEnable(Stage next) {
+            super(next);
+        }
+
+        @Override
+        void accept(char c) {
+            if (isDone) {
+                emit(c);
+                return;
+            }
+            pending.append(c);
+            while (pending.length() > 0) {
+                MatchState state = match();
+                if (state == MatchState.FULL) {
+                    pending.setLength(0);
+                    isDone = true;
+                } else if (state == MatchState.PARTIAL) {
+                    return;
+                } else {
+                    emit(pending.charAt(0));
+                    pending.deleteCharAt(0);
+                }
+            }
+        }
+
+        private MatchState match() {
+            int i = 0;
+            for (; i < PREFIX.length(); i++) {
+                if (i == pending.length()) {
+                    return MatchState.PARTIAL;
+                }
+                if (pending.charAt(i) != PREFIX.charAt(i)) {
+                    return MatchState.NONE;
+                }
+            }
+
+            int nameEnd = i;
+            while (nameEnd < pending.length() && isWordChar(pending.charAt(nameEnd))) {
+                nameEnd++;
+            }
+            if (nameEnd == pending.length()) {
+                return MatchState.PARTIAL;
+            }
+            if (nameEnd == i) {
+                return MatchState.NONE;
+            }
+
+            for (int j = 0; j < SUFFIX.length(); j++) {
+                if (nameEnd + j == pending.length()) {
+                    return MatchState.PARTIAL;
+                }
+                if (pending.charAt(nameEnd + j) != SUFFIX.charAt(j)) {
+                    return MatchState.NONE;
+                }
+            }
+            return MatchState.FULL;
+        }
+
+        @Override
+        void finish() {
+            emit(pending);
+            super.finish();
+        }
+
+        private enum MatchState {
+            NONE,
+            PARTIAL,
+            FULL
+        }
+    }
+}
@@ -2,25 +2,37 @@ package com.onevizion.scmdb;
 
 import com.onevizion.scmdb.dao.DdlDao;
 import com.onevizion.scmdb.vo.DbObject;
-import org.apache.commons.io.FileUtils;
+import com.onevizion.scmdb.vo.DbObjectType;
+import oracle.ucp.jdbc.PoolDataSource;
 import org.apache.commons.io.IOCase;
 import org.apache.commons.io.filefilter.WildcardFileFilter;
-import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Resource;
 import java.io.File;
 import java.io.FileFilter;
-import java.io.IOException;
-import java.util.HashSet;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import static com.onevizion.scmdb.ColorLogger.Color.GREEN;
 import static com.onevizion.scmdb.ColorLogger.Color.RED;
 import static com.onevizion.scmdb.vo.DbObjectType.*;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
 
 @Component
 public class DdlGenerator {
@@ -31,9 +43,17 @@ public class DdlGenerator {
     @Resource
     private AppArguments appArguments;
 
+    @Resource(name = "dataSource")
+    private PoolDataSource poolDataSource;
+
     @Resource
     private ColorLogger logger;
 
+    @Resource
+    private DdlFileWriter ddlFileWriter;
+
+    private volatile DdlFormatter ddlFormatter;
+
     private final String[] excludedSequences = {"SEQ_BPD_ITEMS_UNIT_ID"};
     private final String[] excludedPackages = {"PKGR_"};
     private final String[] excludedViews = {"VX_"};
@@ -41,19 +61,14 @@ public class DdlGenerator {
     private static final String PACKAGES_DDL_DIRECTORY_NAME = "packages";
     private static final String TABLES_DDL_DIRECTORY_NAME = "tables";
     private static final String VIEWS_DDL_DIRECTORY_NAME = "views";
-
-    public void executeSettingTransformParams() {
-        ddlDao.executeTransformParamStatements();
-    }
+    private static final List<DbObjectType> TABLE_DEPENDENT_TYPES = asList(INDEX, TRIGGER, SEQUENCE);
 
     public void generatePackageSpecScripts(DbObject pkgSpec) {
         if (!isExcludeObject(pkgSpec.getName(), excludedPackages)) {
             logger.info("Generating DDL for package spec [{}]", GREEN, pkgSpec.getName());
-            String ddl = removeSchemaNameInDdl(pkgSpec.getDdl());
-            ddl = ddl.trim();
-            ddl = ddl.replaceFirst("\\s+/$", "\n/");
-            ddl = ddl.replaceAll("\\n", "\r\n");
-            pkgSpec.setDdl(ddl);
+            StringBuilder ddl = new StringBuilder(pkgSpec.getDdl().length());
+            getDdlFormatter().formatPackage(new StringReader(pkgSpec.getDdl()), ddl);
+            pkgSpec.setDdl(ddl.toString());
             writeDdlToFile(pkgSpec, PACKAGES_DDL_DIRECTORY_NAME);
         }
     }
@@ -61,34 +76,30 @@ public class DdlGenerator {
     public void generatePackageBodyScripts(DbObject pkgBody) {
         if (!isExcludeObject(pkgBody.getName(), excludedPackages)) {
             logger.info("Generating DDL for package body [{}]", GREEN, pkgBody.getName());
-            String ddl = removeSchemaNameInDdl(pkgBody.getDdl());
-            ddl = ddl.trim();
-            ddl = ddl.replaceFirst("\\s+/$", "\n/");
-            ddl = ddl.replaceAll("\\n", "\r\n");
-            pkgBody.setDdl(ddl);
+            StringBuilder ddl = new StringBuilder(pkgBody.getDdl().length());
+            getDdlFormatter().formatPackage(new StringReader(pkgBody.getDdl()), ddl);
+            pkgBody.setDdl(ddl.toString());
             writeDdlToFile(pkgBody, PACKAGES_DDL_DIRECTORY_NAME);
         }
     }
 
     public void generateTableScripts(DbObject table) {
         logger.info("Generating DDL for table [{}]", GREEN, table.getName());
-        String ddl = removeSchemaNameInDdl(table.getDdl());
-        ddl = ddl.trim();
-        ddl = ddl.replaceAll("\\s+;", ";");
-        ddl = ddl.replaceFirst("\\n\\s+\\(", "(\n");
-        ddl = ddl.replaceFirst("\\s+\\)", "\n)");
-        ddl = ddl.replaceAll("\\n", "\r\n");
-        ddl = ddl.replaceAll("\\t", "    ");
-        ddl = ddl.replaceAll("\\r\\n\\s+REFERENCES\\s", " REFERENCES ");
-        ddl += generateTableCommentsDdl(table);
-        ddl += generateIndexScripts(table);
-        ddl += generateSequenceScripts(table);
-        ddl += generateTriggerScripts(table);
-        table.setDdl(ddl);
+        StringBuilder ddl = new StringBuilder(table.getDdl().length());
+        getDdlFormatter().formatTable(new StringReader(table.getDdl()), ddl);
+        generateTableCommentsDdl(table, ddl);
+        generateIndexScripts(table, ddl);
+        generateSequenceScripts(table, ddl);
+        generateTriggerScripts(table, ddl);
+        table.setDdl(ddl.toString());
         writeDdlToFile(table, TABLES_DDL_DIRECTORY_NAME);
     }
 
     private void writeDdlToFile(DbObject dbObject, String ddlDirectoryName) {
+        ddlFileWriter.write(getDdlFile(dbObject, ddlDirectoryName), dbObject.getDdl());
+    }
+
+    private File getDdlFile(DbObject dbObject, String ddlDirectoryName) {
         String directoryPath = appArguments.getDdlsDirectory().getAbsolutePath() + File.separator + ddlDirectoryName;
 
         String filePath = directoryPath + File.separator + dbObject.getName().toLowerCase();
@@ -96,182 +107,298 @@ public class DdlGenerator {
             filePath += PACKAGE_SPECIFICATION_DDL_FILE_POSTFIX;
         }
         filePath += ".sql";
-        File file = new File(filePath);
-        try {
-            FileUtils.write(file, dbObject.getDdl(), "UTF-8", false);
-        } catch (IOException e) {
-            throw new RuntimeException("Can't write ddl to file[" + file.getAbsolutePath() + "]", e);
-        }
+        return new File(filePath);
     }
 
-    private String generateTableCommentsDdl(DbObject table) {
-        logger.info("Adding comments...");
-        List<DbObject> comments = ddlDao.extractTableDependentObjectsDdl(table.getName(), COMMENT);
-        StringBuilder commentsDdl = new StringBuilder();
-        for (DbObject comment : comments) {
-            String ddl = removeSchemaNameInDdl(comment.getDdl());
-            ddl = ddl.trim();
-
-            Pattern pattern = Pattern.compile("COMMENT ON TABLE.+", Pattern.CASE_INSENSITIVE);
-            Matcher matcher = pattern.matcher(ddl);
-            if (matcher.find()) {
-                String commentStmt = matcher.group();
-                ddl = ddl.replaceFirst("COMMENT ON TABLE.+", "");
-                ddl = commentStmt + "\r\n" + ddl;
-            }
-
-            ddl = ddl.replaceAll("\\n", "");
-            ddl = ddl.replaceAll("\\s+COMMENT", "COMMENT");
-            ddl = ddl.replaceAll("COMMENT", "\r\nCOMMENT");
-            ddl = ddl.trim();
-            ddl = "\r\n\r\n" + ddl;
-            commentsDdl.append(ddl);
+    private void generateTableCommentsDdl(DbObject table, StringBuilder ddl) {
+        logger.info("Adding comments of table [{}]...", table.getName());
+        for (DbObject comment : table.getDependentObjects(COMMENT)) {
+            getDdlFormatter().formatTableComment(comment.getDdl(), ddl);
         }
-        return commentsDdl.toString();
     }
 
-    private String generateIndexScripts(DbObject table) {
-        logger.info("Adding indexes...");
-        List<DbObject> indexes = ddlDao.extractTableDependentObjectsDdl(table.getName(), INDEX);
-        StringBuilder indexesDdl = new StringBuilder();
+    private void generateIndexScripts(DbObject table, StringBuilder ddl) {
+        logger.info("Adding indexes of table [{}]...", table.getName());
+        List<DbObject> indexes = table.getDependentObjects(INDEX);
         for (int i = 0; i < indexes.size(); i++) {
-            DbObject index = indexes.get(i);
-            String ddl = removeSchemaNameInDdl(index.getDdl());
-            ddl = ddl.trim();
-            if (i == 0) {
-                ddl = "\r\n\r\n" + ddl;
-            } else {
-                ddl = "\r\n" + ddl;
-            }
-            ddl = ddl.replaceAll("\\s+;$", ";");
-            indexesDdl.append(ddl);
+            String prefix = i == 0 ? "\r\n\r\n" : "\r\n";
+            getDdlFormatter().formatIndex(new StringReader(indexes.get(i).getDdl()), prefix, ddl);
         }
-        return indexesDdl.toString();
     }
 
-    private String generateSequenceScripts(DbObject table) {
-        logger.info("Adding sequences...");
-        List<DbObject> sequences = ddlDao.extractTableDependentObjectsDdl(table.getName(), SEQUENCE);
-        StringBuilder sequencesDdl = new StringBuilder();
-        for (DbObject sequence : sequences) {
-            String ddl = removeSchemaNameInDdl(sequence.getDdl());
+    private void generateSequenceScripts(DbObject table, StringBuilder ddl) {
+        logger.info("Adding sequences of table [{}]...", table.getName());
+        for (DbObject sequence : table.getDependentObjects(SEQUENCE)) {
+            String sequenceDdl = getDdlFormatter().removeSchemaName(sequence.getDdl());
             boolean isExcludable = false;
             for (String exclSeq : excludedSequences) {
-                if (ddl.contains(exclSeq)) {
+                if (sequenceDdl.contains(exclSeq)) {
                     isExcludable = true;
                     break;
                 }
             }
-            if (isExcludable) {
-                continue;
+            if (!isExcludable) {
+                getDdlFormatter().formatSequence(sequenceDdl, ddl);
             }
-
-            ddl = ddl.trim();
-            ddl = "\r\n" + ddl;
-            int index = ddl.lastIndexOf("\"");
-            if (index != -1) {
-                ddl = ddl.substring(0, index + 1);
-                ddl += ";";
-            } else {
-                ddl = ddl.replaceAll("\\s+;$", ";");
-            }
-            sequencesDdl.append(ddl);
         }
-        return sequencesDdl.toString();
     }
 
-    private String generateTriggerScripts(DbObject table) {
-        logger.info("Adding triggers...");
-        List<DbObject> triggers = ddlDao.extractTableDependentObjectsDdl(table.getName(), TRIGGER);
-        StringBuilder triggersDdl = new StringBuilder();
-        for (DbObject trigger : triggers) {
-            String ddl = removeSchemaNameInDdl(trigger.getDdl());
-            ddl = ddl.trim();
-            ddl = ddl.replaceAll("\\n", "\r\n");
-            ddl = "\r\n" + ddl;
-            ddl = ddl.replaceAll("\\s+/", "\r\n/");
-            ddl = ddl.replaceFirst("ALTER TRIGGER \"\\w+\" ENABLE;", "");
-            triggersDdl.append(ddl);
+    private void generateTriggerScripts(DbObject table, StringBuilder ddl) {
+        logger.info("Adding triggers of table [{}]...", table.getName());
+        for (DbObject trigger : table.getDependentObjects(TRIGGER)) {
+            getDdlFormatter().formatTrigger(new StringReader(trigger.getDdl()), ddl);
         }
-        return triggersDdl.toString();
     }
 
     public void generateViewScripts(DbObject view) {
         if (!isExcludeObject(view.getName(), excludedViews)) {
             logger.info("Generating DDL for view [{}]", GREEN, view.getName());
-            String ddl = removeSchemaNameInDdl(view.getDdl());
-            ddl = ddl.trim();
-            ddl = ddl.replaceAll("\\s+;", ";");
-            ddl = ddl.replaceAll("\\n", "\r\n");
-            ddl += generateViewCommentsScripts(view);
-            view.setDdl(ddl);
+            StringBuilder ddl = new StringBuilder(view.getDdl().length());
+            getDdlFormatter().formatView(new StringReader(view.getDdl()), ddl);
+            generateViewCommentsScripts(view, ddl);
+            view.setDdl(ddl.toString());
             writeDdlToFile(view, VIEWS_DDL_DIRECTORY_NAME);
         }
     }
 
-    private String generateViewCommentsScripts(DbObject view) {
-        logger.info("Adding views comments...");
-        List<DbObject> comments = ddlDao.extractTableDependentObjectsDdl(view.getName(), COMMENT);
-        StringBuilder commentsDdl = new StringBuilder();
-        for (DbObject comment : comments) {
-            String ddl = removeSchemaNameInDdl(comment.getDdl());
-            ddl = ddl.replaceAll("\\s+COMMENT", "\r\nCOMMENT");
-            ddl = ddl.replaceFirst("COMMENT", "\r\nCOMMENT");
-            commentsDdl.append(ddl);
+    private void generateViewCommentsScripts(DbObject view, StringBuilder ddl) {
+        logger.info("Adding comments of view [{}]...", view.getName());
+        for (DbObject comment : view.getDependentObjects(COMMENT)) {
+            getDdlFormatter().formatViewComment(comment.getDdl(), ddl);
         }
-        return commentsDdl.toString();
     }
 
     public void createDdlsForChangedDbObjects(Set<DbObject> dbObjects) {
-        Set<DbObject> tables = new HashSet<>();
+        Map<DbObjectType, Set<String>> namesByType = new EnumMap<>(DbObjectType.class);
         for (DbObject dbObject : dbObjects) {
-            if (dbObject.getType() == COMMENT) {
-                dbObject.setType(ddlDao.getObjectTypeByName(dbObject.getName()));
-            }
+            namesByType.computeIfAbsent(dbObject.getType(), type -> new TreeSet<>()).add(dbObject.getName());
+        }
 
-            if (dbObject.getType() == INDEX || dbObject.getType() == TRIGGER) {
-                String tableName = ddlDao.getTableNameByDepObject(dbObject);
-                if (ddlDao.isExist(tableName, TABLE)) {
-                    tables.add(new DbObject(tableName, TABLE));
-                } else {
+        Set<String> commentedNames = namesByType.remove(COMMENT);
+        if (commentedNames != null) {
+            ddlDao.getObjectTypesByNames(commentedNames).forEach((name, type) ->
+                    namesByType.computeIfAbsent(type, t -> new TreeSet<>()).add(name));
+        }
+
+        Set<String> tableNames = namesByType.computeIfAbsent(TABLE, type -> new TreeSet<>());
+        for (DbObjectType depObjType : TABLE_DEPENDENT_TYPES) {
+            Set<String> depObjNames = namesByType.remove(depObjType);
+            if (depObjNames == null) {
+                continue;
+            }
+            Map<String, Set<String>> tableNamesByDepObject = ddlDao.getTableNamesByDepObjects(depObjType, depObjNames);
+            for (String depObjName : depObjNames) {
+                Set<String> depObjTableNames = tableNamesByDepObject.get(depObjName);
+                if (depObjTableNames == null) {
                     logger.warn("Parent object not found for {} {}! Please, modify related DDL manually.", RED,
-                            dbObject.getType(), dbObject.getName());
-                }
-            } else if (dbObject.getType() == SEQUENCE) {
-                String tableName = ddlDao.getTableNameByDepObject(dbObject);
-                if (StringUtils.isNotBlank(tableName)) {
-                    tables.add(new DbObject(tableName, TABLE));
+                            depObjType, depObjName);
                 } else {
-                    logger.warn("Parent object not found for {} {}! Please, modify related DDL manually.", RED,
-                            dbObject.getType(), dbObject.getName());
+                    tableNames.addAll(depObjTableNames);
+                }
+            }
+        }
+
+        createDdls(namesByType);
+        ddlFileWriter.logSummary();
+    }
+
+    /**
+     * Extracts and writes DDL in chunks of objects on a pool of the size of the connection pool. Every object is
+     * written to its own file, so the output doesn't depend on the order in which the chunks complete.
+     */
+    private void createDdls(Map<DbObjectType, Set<String>> namesByType) {
+        Set<DbObject> extractedObjects = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, poolDataSource.getMaxPoolSize()));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            namesByType.forEach((type, names) -> {
+                List<String> sortedNames = names.stream()
+                                                .map(String::toUpperCase)
+                                                .sorted()
+                                                .distinct()
+                                                .collect(Collectors.toList());
+                for (int from = 0; from < sortedNames.size(); from += DdlDao.EXTRACT_CHUNK_SIZE) {
+                    List<String> chunk = sortedNames.subList(from,
+                            Math.min(from + DdlDao.EXTRACT_CHUNK_SIZE, sortedNames.size()));
+                    futures.add(executor.submit(() -> ddlDao.extractDdls(type, chunk, getDependentTypes(type),
+                            dbObject -> {
+                                extractedObjects.add(dbObject);
+                                generateScripts(dbObject);
+                            })));
                 }
-            } else if (dbObject.getType() == TABLE) {
-                if (!checkAndDeleteRedundantDdl(dbObject)) {
-                    tables.add(dbObject);
+            });
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("DDL generation was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Can't generate DDL", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        namesByType.forEach((type, names) -> {
+            for (String name : names) {
+                DbObject dbObject = new DbObject(name, type);
+                if (!extractedObjects.contains(dbObject)) {
+                    deleteRedundantDdl(dbObject);
                 }
-            } else {
-                if (!checkAndDeleteRedundantDdl(dbObject)) {
-                    dbObject.setDdl(ddlDao.extractDdl(dbObject));
-                    if (dbObject.getType() == PACKAGE_BODY) {
-                        generatePackageBodyScripts(dbObject);
-                    } else if (dbObject.getType() == PACKAGE_SPEC) {
-                        generatePackageSpecScripts(dbObject);
-                    } else if (dbObject.getType() == VIEW) {
-                        generateViewScripts(dbObject);
-                    }
+            }
+        });
+    }
+
+    /**
+     * Regenerates the whole ddl directory. Packages and the dependent DDL of tables and views are read concurrently,
+     * then tables and views are written while their rows are streamed from the cursor. Files of objects which
+     * don't exist anymore are deleted at the end.
+     */
+    public void createFullSchemaDdls() {
+        Set<File> snapshotFiles = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, poolDataSource.getMaxPoolSize()));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            futures.add(executor.submit(() -> ddlDao.extractPackageSpecDdls(
+                    pkgSpec -> generateSnapshotScripts(pkgSpec, snapshotFiles))));
+            futures.add(executor.submit(() -> ddlDao.extractPackageBodiesDdls(
+                    pkgBody -> generateSnapshotScripts(pkgBody, snapshotFiles))));
+
+            List<Future<Map<String, List<DbObject>>>> tableDependentsFutures = asList(
+                    executor.submit(() -> groupByName(ddlDao::extractTabCommentsDdls)),
+                    executor.submit(() -> groupByName(ddlDao::extractIndexesDdls)),
+                    executor.submit(() -> groupByName(ddlDao::extractSequencesDdls)),
+                    executor.submit(() -> groupByName(ddlDao::extractTriggersDdls)));
+            Future<Map<String, List<DbObject>>> viewCommentsFuture =
+                    executor.submit(() -> groupByName(ddlDao::extractViewCommentsDdls));
+
+            List<Map<String, List<DbObject>>> tableDependents = new ArrayList<>();
+            for (Future<Map<String, List<DbObject>>> future : tableDependentsFutures) {
+                tableDependents.add(future.get());
+            }
+            futures.add(executor.submit(() -> ddlDao.extractTablesDdls(table -> {
+                tableDependents.forEach(dependents ->
+                        dependents.getOrDefault(table.getName(), emptyList()).forEach(table::addDependentObject));
+                generateSnapshotScripts(table, snapshotFiles);
+            })));
+
+            Map<String, List<DbObject>> viewComments = viewCommentsFuture.get();
+            futures.add(executor.submit(() -> ddlDao.extractViewsDdls(view -> {
+                viewComments.getOrDefault(view.getName(), emptyList()).forEach(view::addDependentObject);
+                generateSnapshotScripts(view, snapshotFiles);
+            })));
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("DDL generation was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Can't generate DDL", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        deleteStaleDdls(snapshotFiles);
+        ddlFileWriter.logSummary();
+    }
+
+    private Map<String, List<DbObject>> groupByName(Consumer<Consumer<DbObject>> extractor) {
+        Map<String, List<DbObject>> dbObjects = new HashMap<>();
+        extractor.accept(dbObject -> dbObjects.computeIfAbsent(dbObject.getName(), name -> new ArrayList<>())
+                                              .add(dbObject));
+        return dbObjects;
+    }
+
+    private void generateSnapshotScripts(DbObject dbObject, Set<File> snapshotFiles) {
+        // files of excluded objects are kept as well, they are maintained manually
+        snapshotFiles.add(getDdlFile(dbObject, getDdlDirectoryName(dbObject.getType())).getAbsoluteFile());
+        generateScripts(dbObject);
+    }
+
+    /**
+     * Deletes DDL files which weren't written by the snapshot and whose objects don't exist in the schema anymore.
+     * Files of objects left out by the extractors, like Z_ tables, and files maintained manually are kept.
+     */
+    private void deleteStaleDdls(Set<File> snapshotFiles) {
+        Map<File, String> staleFiles = new HashMap<>();
+        for (String ddlDirectoryName : asList(PACKAGES_DDL_DIRECTORY_NAME, TABLES_DDL_DIRECTORY_NAME,
+                VIEWS_DDL_DIRECTORY_NAME)) {
+            File ddlDirectory = new File(appArguments.getDdlsDirectory(), ddlDirectoryName);
+            File[] ddlFiles = ddlDirectory.listFiles((FileFilter) new WildcardFileFilter("*.sql", IOCase.INSENSITIVE));
+            if (ddlFiles == null) {
+                continue;
+            }
+            for (File ddlFile : ddlFiles) {
+                File lowerCaseFile = new File(ddlDirectory, ddlFile.getName().toLowerCase()).getAbsoluteFile();
+                if (!snapshotFiles.contains(lowerCaseFile)) {
+                    staleFiles.put(ddlFile, getObjectName(ddlFile, ddlDirectoryName));
                 }
             }
         }
-        for (DbObject table : tables) {
-            table.setDdl(ddlDao.extractDdl(table));
-            generateTableScripts(table);
+
+        Set<String> existingNames = ddlDao.readExistingObjectNames(new TreeSet<>(staleFiles.values()));
+        staleFiles.forEach((ddlFile, objectName) -> {
+            if (!existingNames.contains(objectName)) {
+                logger.info("Deleting DDL of dropped object [{}]", ddlFile.getName());
+                deleteFilteredFiles(ddlFile.getParentFile(), ddlFile.getName());
+            }
+        });
+    }
+
+    private String getObjectName(File ddlFile, String ddlDirectoryName) {
+        String name = ddlFile.getName().toLowerCase();
+        name = name.substring(0, name.length() - ".sql".length());
+        if (PACKAGES_DDL_DIRECTORY_NAME.equals(ddlDirectoryName) && name.endsWith(PACKAGE_SPECIFICATION_DDL_FILE_POSTFIX)) {
+            name = name.substring(0, name.length() - PACKAGE_SPECIFICATION_DDL_FILE_POSTFIX.length());
+        }
+        return name;
+    }
+
+    private String getDdlDirectoryName(DbObjectType type) {
+        if (type == TABLE) {
+            return TABLES_DDL_DIRECTORY_NAME;
+        } else if (type == VIEW) {
+            return VIEWS_DDL_DIRECTORY_NAME;
+        } else {
+            return PACKAGES_DDL_DIRECTORY_NAME;
+        }
+    }
+
+    private List<DbObjectType> getDependentTypes(DbObjectType type) {
+        if (type == TABLE) {
+            return asList(COMMENT, INDEX, SEQUENCE, TRIGGER);
+        } else if (type == VIEW) {
+            return singletonList(COMMENT);
+        } else {
+            return emptyList();
+        }
+    }
+
+    private void generateScripts(DbObject dbObject) {
+        if (dbObject.getType() == PACKAGE_BODY) {
+            generatePackageBodyScripts(dbObject);
+        } else if (dbObject.getType() == PACKAGE_SPEC) {
+            generatePackageSpecScripts(dbObject);
+        } else if (dbObject.getType() == VIEW) {
+            generateViewScripts(dbObject);
+        } else if (dbObject.getType() == TABLE) {
+            generateTableScripts(dbObject);
         }
     }
 
     public String removeSchemaNameInDdl(String ddl) {
-        String regexp = String.format("\"%s\".", appArguments.getOwnerCredentials().getSchemaName().toUpperCase());
-        ddl = ddl.replaceAll(regexp, "");
-        return ddl;
+        return getDdlFormatter().removeSchemaName(ddl);
+    }
+
+    private DdlFormatter getDdlFormatter() {
+        DdlFormatter formatter = ddlFormatter;
+        if (formatter == null) {
+            formatter = new DdlFormatter(appArguments.getOwnerCredentials().getSchemaName());
+            ddlFormatter = formatter;
+        }
+        return formatter;
     }
 
     private boolean isExcludeObject(String objectName, String[] excludedObjects) {
@@ -283,26 +410,24 @@ public class DdlGenerator {
         return false;
     }
 
-    private boolean checkAndDeleteRedundantDdl(DbObject dbObject) {
+    private void deleteRedundantDdl(DbObject dbObject) {
         String ddlsDirectoryPath = appArguments.getDdlsDirectory().getAbsolutePath();
         boolean isDeletePackageSpecWithBody = false;
         File fileDir = null;
         String fileName = null;
-        if (!ddlDao.isExist(dbObject.getName(), dbObject.getType())) {
-            if (dbObject.getType() == PACKAGE_BODY) {
-                fileDir = new File(appArguments.getDdlsDirectory() + PACKAGES_DDL_DIRECTORY_NAME);
-                fileName = dbObject.getName() + ".sql";
-            } else if (dbObject.getType() == PACKAGE_SPEC) {
-                fileDir = new File(ddlsDirectoryPath + File.separator + PACKAGES_DDL_DIRECTORY_NAME);
-                fileName = dbObject.getName() + "_spec.sql";
-                isDeletePackageSpecWithBody = true;
-            } else if (dbObject.getType() == TABLE) {
-                fileDir = new File(ddlsDirectoryPath + File.separator + TABLES_DDL_DIRECTORY_NAME);
-                fileName = dbObject.getName() + ".sql";
-            } else if (dbObject.getType() == VIEW) {
-                fileDir = new File(ddlsDirectoryPath + File.separator + VIEWS_DDL_DIRECTORY_NAME);
-                fileName = dbObject.getName() + ".sql";
-            }
+        if (dbObject.getType() == PACKAGE_BODY) {
+            fileDir = new File(ddlsDirectoryPath + File.separator + PACKAGES_DDL_DIRECTORY_NAME);
+            fileName = dbObject.getName() + ".sql";
+        } else if (dbObject.getType() == PACKAGE_SPEC) {
+            fileDir = new File(ddlsDirectoryPath + File.separator + PACKAGES_DDL_DIRECTORY_NAME);
+            fileName = dbObject.getName() + "_spec.sql";
+            isDeletePackageSpecWithBody = true;
+        } else if (dbObject.getType() == TABLE) {
+            fileDir = new File(ddlsDirectoryPath + File.separator + TABLES_DDL_DIRECTORY_NAME);
+            fileName = dbObject.getName() + ".sql";
+        } else if (dbObject.getType() == VIEW) {
+            fileDir = new File(ddlsDirectoryPath + File.separator + VIEWS_DDL_DIRECTORY_NAME);
+            fileName = dbObject.getName() + ".sql";
         }
 
         if (fileName != null) {
@@ -311,9 +436,7 @@ public class DdlGenerator {
                 String packBodyName = dbObject.getName() + ".sql";
                 deleteFilteredFiles(fileDir, packBodyName);
             }
-            return true;
         }
-        return false;
     }
 
     private void deleteFilteredFiles(File fileDir, String fileName) {
@@ -321,11 +444,7 @@ public class DdlGenerator {
         File[] filteredFiles = fileDir.listFiles(filter);
         if (filteredFiles != null && filteredFiles.length > 0) {
             for (File file : filteredFiles) {
-                try {
-                    FileUtils.forceDeleteOnExit(file);
-                } catch (IOException e) {
-                    throw new RuntimeException("Can't delete ddl file [" + file.getAbsolutePath() + "]", e);
-                }
+                ddlFileWriter.delete(file);
             }
         }
     }
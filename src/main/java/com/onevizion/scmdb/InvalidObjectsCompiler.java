@@ -0,0 +1,173 @@
+package com.onevizion.scmdb;
+
+import com.onevizion.scmdb.dao.InvalidObjectDaoOra;
+import com.onevizion.scmdb.vo.SchemaObject;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.onevizion.scmdb.ColorLogger.Color.YELLOW;
+
+/**
+ * Recompiles invalid objects of the owner schema once per batch of scripts instead of after every script.
+ * Objects are compiled in levels of {@code user_dependencies} order, objects of one level in parallel.
+ */
+@Component
+public class InvalidObjectsCompiler {
+    private static final int COMPILE_THREADS = 4;
+    private static final int MAX_PASSES = 3;
+    private static final String USER_SCHEMA_SUFFIX = "_USER";
+    private static final String RPT_SCHEMA_SUFFIX = "_RPT";
+
+    @Resource
+    private AppArguments appArguments;
+
+    @Resource
+    private InvalidObjectDaoOra invalidObjectDaoOra;
+
+    @Resource
+    private ColorLogger logger;
+
+    @Resource
+    private RunMetrics runMetrics;
+
+    private final AtomicInteger scriptsSinceCompilation = new AtomicInteger();
+    private volatile boolean isScheduled;
+
+    /**
+     * Counts an executed script and compiles invalid objects when the interval is reached. Returns true if they
+     * were compiled. Scripts run by {@link ScriptScheduler} are only counted, the scheduler compiles them.
+     */
+    public boolean scriptExecuted() {
+        int interval = appArguments.getCompileInvalidsInterval();
+        int executedScripts = scriptsSinceCompilation.incrementAndGet();
+        if (!isScheduled && interval > 1 && executedScripts >= interval) {
+            compilePending();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns true when enough scripts were executed since the last compilation to compile invalid objects again.
+     */
+    public boolean isCompileDue() {
+        int interval = appArguments.getCompileInvalidsInterval();
+        return interval > 0 && scriptsSinceCompilation.get() >= interval;
+    }
+
+    public boolean isScheduled() {
+        return isScheduled;
+    }
+
+    /**
+     * While scripts run concurrently invalid objects are compiled by the scheduler when no script is running, so a
+     * compilation never sees DDL of another script half applied.
+     */
+    public void setScheduled(boolean isScheduled) {
+        this.isScheduled = isScheduled;
+    }
+
+    public synchronized void compilePending() {
+        if (scriptsSinceCompilation.getAndSet(0) > 0) {
+            runMetrics.time(RunMetrics.RECOMPILE_PHASE, this::compile);
+        }
+    }
+
+    private void compile() {
+        logger.info("\nCompiling invalid objects");
+        List<SchemaObject> invalidObjects = invalidObjectDaoOra.readInvalid();
+        for (int pass = 0; pass < MAX_PASSES && !invalidObjects.isEmpty(); pass++) {
+            List<List<SchemaObject>> levels = getCompilationLevels(invalidObjects, invalidObjectDaoOra.readInvalidDependencies());
+            compileLevels(levels);
+
+            List<SchemaObject> stillInvalid = invalidObjectDaoOra.readInvalid();
+            if (stillInvalid.size() >= invalidObjects.size()) {
+                break;
+            }
+            invalidObjects = stillInvalid;
+        }
+
+        compileSchema(USER_SCHEMA_SUFFIX);
+        compileSchema(RPT_SCHEMA_SUFFIX);
+
+        List<SchemaObject> invalid = invalidObjectDaoOra.readAllInvalid();
+        if (!invalid.isEmpty()) {
+            logger.warn("Invalid objects in [{}]:", YELLOW, appArguments.getOwnerCredentials().getSchemaName());
+            invalid.forEach(object -> logger.warn("{} {} is invalid.", YELLOW, object.getType(), object.getName()));
+        }
+    }
+
+    private List<List<SchemaObject>> getCompilationLevels(List<SchemaObject> invalidObjects,
+                                                          Map<SchemaObject, Set<SchemaObject>> dependencies) {
+        List<List<SchemaObject>> levels = new ArrayList<>();
+        Set<SchemaObject> remaining = new HashSet<>(invalidObjects);
+        while (!remaining.isEmpty()) {
+            List<SchemaObject> level = new ArrayList<>();
+            for (SchemaObject object : remaining) {
+                Set<SchemaObject> referenced = dependencies.getOrDefault(object, Collections.emptySet());
+                if (Collections.disjoint(referenced, remaining)) {
+                    level.add(object);
+                }
+            }
+            if (level.isEmpty()) {
+                // objects of a dependency cycle are compiled together
+                level.addAll(remaining);
+            }
+            remaining.removeAll(level);
+            levels.add(level);
+        }
+        return levels;
+    }
+
+    private void compileLevels(List<List<SchemaObject>> levels) {
+        ExecutorService executor = Executors.newFixedThreadPool(COMPILE_THREADS);
+        try {
+            for (List<SchemaObject> level : levels) {
+                List<Future<?>> futures = new ArrayList<>(level.size());
+                for (SchemaObject object : level) {
+                    futures.add(executor.submit(() -> compileObject(object)));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Compilation of invalid objects was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Can't compile invalid objects", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void compileObject(SchemaObject object) {
+        try {
+            invalidObjectDaoOra.compile(object);
+        } catch (DataAccessException e) {
+            // compilation errors are reported with the list of invalid objects
+        }
+    }
+
+    private void compileSchema(String schemaSuffix) {
+        try {
+            invalidObjectDaoOra.compileSchema(schemaSuffix);
+        } catch (DataAccessException e) {
+            logger.error("Can't compile schema [{}{}]: {}", appArguments.getOwnerCredentials().getSchemaName(),
+                    schemaSuffix, e.getMessage());
+        }
+    }
+}
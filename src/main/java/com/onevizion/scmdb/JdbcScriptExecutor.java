@@ -0,0 +1,505 @@
+package com.onevizion.scmdb;
+
+import com.onevizion.scmdb.vo.DbCnnCredentials;
+import com.onevizion.scmdb.vo.ScriptStatement;
+import oracle.ucp.jdbc.PoolDataSourceImpl;
+import oracle.ucp.jdbc.ValidConnection;
+import org.apache.commons.io.FilenameUtils;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+@Component
+public class JdbcScriptExecutor {
+    private static final String COMPILE_INVALIDS_SQL = "compile_invalids.sql";
+    private static final int MAX_POOL_SIZE = 5;
+    private static final String POOL_NAME_PREFIX = "scmdb-jdbc-";
+    private static final AtomicInteger POOL_SEQUENCE = new AtomicInteger();
+    private static final Pattern SUBSTITUTION_VARIABLE = Pattern.compile("&&?([A-Za-z0-9_$#]+)\\.?");
+    // commands which only format or display output, the statements that follow run the same without them
+    private static final Set<String> SKIPPED_COMMANDS = new HashSet<>(Arrays.asList(
+            "bre", "break", "btitle", "cl", "clear", "col", "column", "comp", "compute", "rem", "remark", "repheader",
+            "sho", "show", "timing", "ttitle"));
+
+    @Resource
+    private AppArguments appArguments;
+
+    private final Map<String, SessionPool> pools = new ConcurrentHashMap<>();
+
+    /**
+     * Executes the script on a pooled connection which is reset before it goes back to the pool, so session state
+     * left by a script, like NLS settings, current_schema or package state, never reaches the next script.
+     */
+    public int execute(DbCnnCredentials credentials, File scriptFile, boolean compileInvalids, Consumer<String> output) {
+        try {
+            SessionPool pool = getPool(credentials);
+            Connection connection = pool.borrow();
+            try {
+                ScriptSession session = new ScriptSession(connection, scriptFile.getAbsoluteFile().getParentFile(),
+                        output);
+                try {
+                    output.accept(OutputClassifier.SCRIPT_START_MARKER);
+                    int exitCode = session.executeFile(scriptFile, new String[0]);
+                    if (exitCode == 0 && compileInvalids && !session.isExited) {
+                        output.accept(OutputClassifier.COMPILE_INVALIDS_START_MARKER);
+                        exitCode = session.executeResource(COMPILE_INVALIDS_SQL);
+                    }
+                    return toProcessExitCode(exitCode);
+                } finally {
+                    session.close();
+                }
+            } finally {
+                pool.release(connection);
+            }
+        } catch (SQLException e) {
+            output.accept(e.getMessage());
+            return toProcessExitCode(e.getErrorCode() == 0 ? 1 : e.getErrorCode());
+        } catch (IOException e) {
+            output.accept("Can't read script: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    private SessionPool getPool(DbCnnCredentials credentials) throws SQLException {
+        SessionPool pool = pools.get(credentials.getConnectionString());
+        if (pool != null) {
+            return pool;
+        }
+
+        PoolDataSourceImpl dataSource = new PoolDataSourceImpl();
+        dataSource.setConnectionFactoryClassName("oracle.jdbc.pool.OracleDataSource");
+        dataSource.setURL(credentials.getOracleUrl());
+        dataSource.setUser(credentials.getSchemaName());
+        dataSource.setPassword(credentials.getPassword());
+        dataSource.setInitialPoolSize(1);
+        dataSource.setMaxPoolSize(Math.max(MAX_POOL_SIZE, appArguments.getParallelScripts()));
+        // pools of every target of a fan-out live in one process, names tell them apart
+        dataSource.setConnectionPoolName(POOL_NAME_PREFIX + POOL_SEQUENCE.incrementAndGet());
+        pool = new SessionPool(dataSource, credentials.getSchemaName());
+        SessionPool existing = pools.putIfAbsent(credentials.getConnectionString(), pool);
+        return existing == null ? pool : existing;
+    }
+
+    @PreDestroy
+    public void closePools() {
+        pools.values().forEach(pool -> ConnectionPools.destroy(pool.dataSource));
+        pools.clear();
+    }
+
+    // SQLcl exits with sql.sqlcode and the OS keeps only its low byte, so both engines report the same exit code.
+    // An error code which is a multiple of 256 still fails here instead of passing as exit code 0
+    private static int toProcessExitCode(int code) {
+        int exitCode = code & 0xFF;
+        return exitCode == 0 && code != 0 ? 1 : exitCode;
+    }
+
+    /**
+     * Connections of one schema. The NLS settings of a new session are read once, every connection of the pool logs
+     * in the same way, and are restored together with current_schema, package state and dbms_output when a
+     * connection is released. A connection which can't be reset is closed instead of going back to the pool.
+     */
+    private static final class SessionPool {
+        private static final String NLS_SETTINGS_SQL = "select parameter, value from nls_session_parameters";
+        private static final String TIME_ZONE_SQL = "select sessiontimezone from dual";
+        private static final String RESET_PACKAGES_SQL = "begin dbms_session.modify_package_state(" +
+                "dbms_session.reinitialize); dbms_output.disable; end;";
+
+        private final PoolDataSourceImpl dataSource;
+        private final String schemaName;
+        private volatile String restoreNlsSql;
+
+        private SessionPool(PoolDataSourceImpl dataSource, String schemaName) {
+            this.dataSource = dataSource;
+            this.schemaName = schemaName;
+        }
+
+        private Connection borrow() throws SQLException {
+            Connection connection = dataSource.getConnection();
+            if (restoreNlsSql == null) {
+                synchronized (this) {
+                    if (restoreNlsSql == null) {
+                        try {
+                            restoreNlsSql = readNlsSettings(connection);
+                        } catch (SQLException e) {
+                            connection.close();
+                            throw e;
+                        }
+                    }
+                }
+            }
+            return connection;
+        }
+
+        private void release(Connection connection) throws SQLException {
+            try {
+                reset(connection);
+            } catch (SQLException e) {
+                // the script is done either way, a session which keeps its state is dropped from the pool
+                ((ValidConnection) connection).setInvalid();
+            } finally {
+                connection.close();
+            }
+        }
+
+        private void reset(Connection connection) throws SQLException {
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(RESET_PACKAGES_SQL);
+                statement.execute(restoreNlsSql);
+                statement.execute("alter session set current_schema=" + schemaName);
+            }
+        }
+
+        // language and territory go first, they reset the settings derived from them
+        private static String readNlsSettings(Connection connection) throws SQLException {
+            StringBuilder languageSql = new StringBuilder("alter session set");
+            StringBuilder otherSql = new StringBuilder();
+            try (Statement statement = connection.createStatement()) {
+                try (ResultSet rs = statement.executeQuery(NLS_SETTINGS_SQL)) {
+                    while (rs.next()) {
+                        String parameter = rs.getString(1);
+                        if (rs.getString(2) == null) {
+                            continue;
+                        }
+                        StringBuilder sql = "NLS_LANGUAGE".equals(parameter) || "NLS_TERRITORY".equals(parameter)
+                                ? languageSql : otherSql;
+                        sql.append(' ').append(parameter).append("=").append(quote(rs.getString(2)));
+                    }
+                }
+                try (ResultSet rs = statement.executeQuery(TIME_ZONE_SQL)) {
+                    rs.next();
+                    otherSql.append(" TIME_ZONE=").append(quote(rs.getString(1)));
+                }
+            }
+            return languageSql.append(otherSql).toString();
+        }
+
+        private static String quote(String value) {
+            return "'" + value.replace("'", "''") + "'";
+        }
+    }
+
+    private static final class ScriptSession {
+        private final Connection connection;
+        private final File workingDir;
+        private final Consumer<String> output;
+        private final Map<String, String> defines = new HashMap<>();
+
+        private boolean isExitOnError = true;
+        private boolean isDefineEnabled = true;
+        private boolean isServerOutputEnabled;
+        private boolean isExited;
+        private int exitCode;
+        private int lastErrorCode;
+        private boolean isNested;
+
+        private ScriptSession(Connection connection, File workingDir, Consumer<String> output) throws SQLException {
+            this.connection = connection;
+            this.workingDir = workingDir;
+            this.output = output;
+            connection.setAutoCommit(false);
+            defines.put("_USER", connection.getMetaData().getUserName());
+        }
+
+        private int executeResource(String resourceName) throws IOException, SQLException {
+            InputStream resource = getClass().getClassLoader().getResourceAsStream(resourceName);
+            if (resource == null) {
+                throw new IOException("Resource [" + resourceName + "] not found");
+            }
+            try (Reader reader = new InputStreamReader(resource, StandardCharsets.UTF_8)) {
+                return executeStatements(new SqlStatementReader(reader), resourceName, workingDir);
+            }
+        }
+
+        private int executeFile(File scriptFile, String[] args) throws IOException, SQLException {
+            Map<String, String> savedArgs = new HashMap<>();
+            for (int i = 0; i < args.length; i++) {
+                String argName = String.valueOf(i + 1);
+                savedArgs.put(argName, defines.put(argName, args[i]));
+            }
+            try (Reader reader = new InputStreamReader(new FileInputStream(scriptFile), StandardCharsets.UTF_8)) {
+                return executeStatements(new SqlStatementReader(reader), scriptFile.getAbsolutePath(),
+                        scriptFile.getAbsoluteFile().getParentFile());
+            } finally {
+                for (Map.Entry<String, String> savedArg : savedArgs.entrySet()) {
+                    if (savedArg.getValue() == null) {
+                        defines.remove(savedArg.getKey());
+                    } else {
+                        defines.put(savedArg.getKey(), savedArg.getValue());
+                    }
+                }
+            }
+        }
+
+        private int executeStatements(SqlStatementReader reader, String scriptName, File scriptDir)
+                throws IOException, SQLException {
+            ScriptStatement statement;
+            while ((statement = reader.next()) != null) {
+                int statementExitCode;
+                if (statement.getType() == ScriptStatement.Type.COMMAND) {
+                    statementExitCode = executeCommand(statement, scriptName, scriptDir);
+                } else {
+                    statementExitCode = executeSql(statement, substitute(statement.getText()), scriptName);
+                }
+                if (statementExitCode != 0 || isExited) {
+                    return isExited ? exitCode : statementExitCode;
+                }
+            }
+            return 0;
+        }
+
+        private int executeSql(ScriptStatement statement, String sql, String scriptName) throws SQLException {
+            try (Statement jdbcStatement = connection.createStatement()) {
+                jdbcStatement.setEscapeProcessing(false);
+                if (isQuery(sql)) {
+                    try (ResultSet rs = jdbcStatement.executeQuery(sql)) {
+                        printRows(rs);
+                    }
+                } else {
+                    jdbcStatement.execute(sql);
+                    printWarnings(jdbcStatement.getWarnings());
+                }
+            } catch (SQLException e) {
+                printServerOutput();
+                return handleError(statement, scriptName, e);
+            }
+            printServerOutput();
+            return 0;
+        }
+
+        private int executeCommand(ScriptStatement statement, String scriptName, File scriptDir)
+                throws IOException, SQLException {
+            String command = substitute(statement.getText());
+            String[] words = command.split("\\s+", 3);
+            String keyword = words[0].toLowerCase();
+
+            if (keyword.startsWith("@") || "start".equals(keyword) || "sta".equals(keyword)) {
+                return executeNestedScript(command, scriptDir);
+            } else if ("pro".equals(keyword) || "prompt".equals(keyword)) {
+                output.accept(command.length() > keyword.length() ? command.substring(keyword.length() + 1) : "");
+            } else if ("exec".equals(keyword) || "execute".equals(keyword)) {
+                String plsql = command.substring(keyword.length()).trim();
+                if (plsql.endsWith(";")) {
+                    plsql = plsql.substring(0, plsql.length() - 1);
+                }
+                return executeSql(statement, "begin " + plsql + "; end;", scriptName);
+            } else if ("whenever".equals(keyword)) {
+                if (words.length > 2 && "sqlerror".equalsIgnoreCase(words[1])) {
+                    isExitOnError = words[2].toLowerCase().startsWith("exit");
+                }
+            } else if ("set".equals(keyword)) {
+                if (words.length > 2) {
+                    executeSetCommand(words[1].toLowerCase(), words[2].toLowerCase());
+                }
+            } else if ("def".equals(keyword) || "define".equals(keyword)) {
+                executeDefineCommand(command.substring(keyword.length()).trim());
+            } else if ("undef".equals(keyword) || "undefine".equals(keyword)) {
+                if (words.length > 1) {
+                    defines.remove(words[1].toUpperCase());
+                }
+            } else if ("exit".equals(keyword) || "quit".equals(keyword)) {
+                isExited = true;
+                exitCode = getExitCode(words.length > 1 ? words[1] : "");
+            } else if (!SKIPPED_COMMANDS.contains(keyword)) {
+                // connect, variable, accept, host, spool and the like change what the following statements do
+                return handleError(statement, scriptName,
+                        "Unsupported SQL*Plus command at line " + statement.getLineNumber() + ": " + words[0], 0);
+            }
+            return 0;
+        }
+
+        private void executeSetCommand(String option, String value) throws SQLException {
+            if ("define".equals(option) || "scan".equals(option)) {
+                isDefineEnabled = !"off".equals(value);
+            } else if (option.startsWith("serverout")) {
+                isServerOutputEnabled = value.startsWith("on");
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute(isServerOutputEnabled ? "begin dbms_output.enable(null); end;"
+                            : "begin dbms_output.disable; end;");
+                }
+            }
+        }
+
+        private void executeDefineCommand(String definition) {
+            int equalsIndex = definition.indexOf('=');
+            if (equalsIndex <= 0) {
+                return;
+            }
+            String name = definition.substring(0, equalsIndex).trim().toUpperCase();
+            String value = definition.substring(equalsIndex + 1).trim();
+            if (value.length() > 1 && (value.startsWith("'") && value.endsWith("'")
+                    || value.startsWith("\"") && value.endsWith("\""))) {
+                value = value.substring(1, value.length() - 1);
+            }
+            defines.put(name, value);
+        }
+
+        private int executeNestedScript(String command, File scriptDir) throws IOException, SQLException {
+            String arguments;
+            File baseDir;
+            if (command.startsWith("@@")) {
+                arguments = command.substring(2).trim();
+                baseDir = scriptDir;
+            } else if (command.startsWith("@")) {
+                arguments = command.substring(1).trim();
+                baseDir = workingDir;
+            } else {
+                arguments = command.substring(command.indexOf(' ') + 1).trim();
+                baseDir = workingDir;
+            }
+
+            String[] parts = arguments.split("\\s+");
+            String fileName = parts[0].replace("\"", "");
+            if (FilenameUtils.getExtension(fileName).isEmpty()) {
+                fileName += ".sql";
+            }
+            File nestedFile = new File(fileName);
+            if (!nestedFile.isAbsolute()) {
+                nestedFile = new File(baseDir, fileName);
+            }
+            String[] args = new String[parts.length - 1];
+            System.arraycopy(parts, 1, args, 0, args.length);
+
+            boolean wasNested = isNested;
+            isNested = true;
+            try {
+                return executeFile(nestedFile, args);
+            } finally {
+                isNested = wasNested;
+            }
+        }
+
+        private int handleError(ScriptStatement statement, String scriptName, SQLException e) {
+            return handleError(statement, scriptName, e.getMessage().trim(), e.getErrorCode());
+        }
+
+        private int handleError(ScriptStatement statement, String scriptName, String message, int errorCode) {
+            lastErrorCode = errorCode;
+            if (isNested) {
+                output.accept("Error starting at line : " + statement.getLineNumber() + " File @ " + scriptName);
+            } else {
+                output.accept("Error starting at line : " + statement.getLineNumber() + " in command -");
+            }
+            output.accept(statement.getText());
+            output.accept("Error report -");
+            output.accept(message);
+
+            if (!isExitOnError) {
+                return 0;
+            }
+            return lastErrorCode == 0 ? 1 : lastErrorCode;
+        }
+
+        private int getExitCode(String exitArgument) {
+            String argument = exitArgument.toLowerCase().replace(";", "");
+            if (argument.isEmpty() || "success".equals(argument)) {
+                return 0;
+            } else if ("sql.sqlcode".equals(argument)) {
+                return lastErrorCode;
+            } else if ("failure".equals(argument)) {
+                return 1;
+            } else if ("warning".equals(argument)) {
+                return 2;
+            }
+            try {
+                return Integer.parseInt(argument);
+            } catch (NumberFormatException e) {
+                return 1;
+            }
+        }
+
+        private String substitute(String text) {
+            if (!isDefineEnabled || text.indexOf('&') < 0) {
+                return text;
+            }
+            Matcher matcher = SUBSTITUTION_VARIABLE.matcher(text);
+            StringBuffer result = new StringBuffer();
+            while (matcher.find()) {
+                String value = defines.get(matcher.group(1).toUpperCase());
+                matcher.appendReplacement(result, Matcher.quoteReplacement(value == null ? matcher.group() : value));
+            }
+            matcher.appendTail(result);
+            return result.toString();
+        }
+
+        private boolean isQuery(String sql) {
+            String firstWord = sql.trim().split("[\\s(]+", 2)[0].toLowerCase();
+            return "select".equals(firstWord) || "with".equals(firstWord);
+        }
+
+        private void printRows(ResultSet rs) throws SQLException {
+            ResultSetMetaData metaData = rs.getMetaData();
+            int columnCount = metaData.getColumnCount();
+            while (rs.next()) {
+                StringBuilder row = new StringBuilder();
+                for (int i = 1; i <= columnCount; i++) {
+                    if (i > 1) {
+                        row.append(' ');
+                    }
+                    String value = rs.getString(i);
+                    row.append(value == null ? "" : value);
+                }
+                output.accept(row.toString());
+            }
+        }
+
+        private void printWarnings(SQLWarning warning) {
+            while (warning != null) {
+                output.accept("Warning: " + warning.getMessage().trim());
+                warning = warning.getNextWarning();
+            }
+        }
+
+        private void printServerOutput() throws SQLException {
+            if (!isServerOutputEnabled) {
+                return;
+            }
+            try (CallableStatement call = connection.prepareCall("begin dbms_output.get_line(?, ?); end;")) {
+                call.registerOutParameter(1, Types.VARCHAR);
+                call.registerOutParameter(2, Types.INTEGER);
+                while (true) {
+                    call.execute();
+                    if (call.getInt(2) != 0) {
+                        break;
+                    }
+                    String line = call.getString(1);
+                    output.accept(line == null ? "" : line);
+                }
+            }
+        }
+
+        private void close() throws SQLException {
+            connection.commit();
+            connection.setAutoCommit(true);
+        }
+    }
+}
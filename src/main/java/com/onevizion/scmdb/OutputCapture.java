@@ -0,0 +1,89 @@
+package com.onevizion.scmdb;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the head and the tail of script output within a fixed number of chars. Lines between them are counted
+ * and replaced with a single marker line.
+ */
+public class OutputCapture {
+    private final int headCapacity;
+    private final int tailCapacity;
+
+    private final StringBuilder head = new StringBuilder();
+    private final Deque<String> tail = new ArrayDeque<>();
+    private int tailLength;
+    private long skippedLines;
+    private long skippedChars;
+
+    public OutputCapture(int capacity) {
+        headCapacity = capacity / 2;
+        tailCapacity = capacity - headCapacity;
+    }
+
+    public synchronized void append(String line) {
+        if (tail.isEmpty() && head.length() + line.length() + 1 <= headCapacity) {
+            head.append(line).append('\n');
+            return;
+        }
+
+        if (line.length() + 1 > tailCapacity) {
+            skippedChars += line.length() + 1 - tailCapacity;
+            line = line.substring(0, Math.max(tailCapacity - 1, 0));
+        }
+        tail.addLast(line);
+        tailLength += line.length() + 1;
+        while (tailLength > tailCapacity) {
+            String evicted = tail.removeFirst();
+            tailLength -= evicted.length() + 1;
+            skippedLines++;
+            skippedChars += evicted.length() + 1;
+        }
+    }
+
+    public synchronized String getOutput() {
+        StringBuilder output = new StringBuilder(head.length() + tailLength + 64);
+        output.append(head);
+        if (skippedLines > 0 || skippedChars > 0) {
+            output.append("... ").append(skippedLines).append(" lines (").append(skippedChars)
+                  .append(" chars) of output skipped ...\n");
+        }
+        tail.forEach(line -> output.append(line).append('\n'));
+        return output.toString();
+    }
+
+    public synchronized boolean isEmpty() {
+        return head.length() == 0 && tail.isEmpty();
+    }
+
+    public static String compress(String output) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(output.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new RuntimeException("Can't compress script output", e);
+        }
+        return Base64.getEncoder().encodeToString(bytes.toByteArray());
+    }
+
+    public static String decompress(String compressedOutput) {
+        byte[] bytes = Base64.getDecoder().decode(compressedOutput);
+        try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return IOUtils.toString(gzip, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException("Can't decompress script output", e);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.onevizion.scmdb;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Classifies lines of script output. Holds the state of one execution, so a new instance is needed for every script.
+ * Every rule checks a plain prefix or substring first and runs its regex only for lines which pass it.
+ */
+public class OutputClassifier {
+    /**
+     * Lines printed by every execution engine once it is logged in and is about to run the script, and before
+     * it compiles invalid objects.
+     */
+    public static final String SCRIPT_START_MARKER = "scmdb:script-start";
+    public static final String COMPILE_INVALIDS_START_MARKER = "scmdb:compile-invalids-start";
+
+    private static final String INVALID_OBJECT_PREFIX = "Invalid objects in";
+    private static final Pattern INVALID_OBJECT_PATTERN = Pattern.compile("^(\\w+\\s){0,2}\\w+\\s+\\S+\\s+is invalid.\\s*");
+
+    private static final String SQLCL_BANNER_START_PREFIX = "SQLcl: Release ";
+    private static final Pattern SQLCL_BANNER_START_PATTERN = Pattern.compile("^SQLcl: Release [\\d|.]+ Production on .+");
+    private static final String SQLCL_BANNER_ORA_VERSION_REGEX = "Oracle Database [\\w|\\d]+ \\w+ \\w+ Release [\\d|.]+ - \\d+bit Production";
+    private static final String SQLCL_BANNER_END_PREFIX = "Oracle Database ";
+    private static final Pattern SQLCL_BANNER_END_PATTERN = Pattern.compile("^" + SQLCL_BANNER_ORA_VERSION_REGEX);
+    private static final String SQLCL_DISCON_FROM_DB_PREFIX = "Disconnected from ";
+    private static final Pattern SQLCL_DISCON_FROM_DB_PATTERN = Pattern.compile("^Disconnected from " + SQLCL_BANNER_ORA_VERSION_REGEX);
+
+    private static final String ERROR_STARTING_AT_LINE = "Error starting at line :";
+    private static final String WARNING_PREFIX = "Warning:";
+    private static final String ORA_ERROR_MARKER = "ORA-";
+    private static final Pattern ORA_ERROR_PATTERN = Pattern.compile("ORA-\\d{5}");
+
+    private static final List<Rule> RULES = Arrays.asList(
+            new Rule(LineType.INVALID_OBJECTS_HEADER, INVALID_OBJECT_PREFIX, true, null),
+            new Rule(LineType.INVALID_OBJECT, "is invalid", false, INVALID_OBJECT_PATTERN),
+            new Rule(LineType.ERROR, ERROR_STARTING_AT_LINE, true, null),
+            new Rule(LineType.WARNING, WARNING_PREFIX, true, null));
+
+    private boolean isSqlClBannerStarted = false;
+    private boolean isErrorMsgStarted = false;
+
+    private int errorCount;
+    private int warningCount;
+    private int invalidObjectCount;
+
+    public LineType classify(String line) {
+        if (SCRIPT_START_MARKER.equals(line)) {
+            return LineType.SCRIPT_STARTED;
+        } else if (COMPILE_INVALIDS_START_MARKER.equals(line)) {
+            return LineType.COMPILE_INVALIDS_STARTED;
+        }
+
+        if (isSqlClBannerPrinted(line)) {
+            return LineType.BANNER;
+        }
+
+        if (line.contains(ORA_ERROR_MARKER) && ORA_ERROR_PATTERN.matcher(line).find()) {
+            errorCount++;
+        }
+
+        for (Rule rule : RULES) {
+            if (!rule.matches(line)) {
+                continue;
+            }
+            switch (rule.type) {
+                case INVALID_OBJECT:
+                    invalidObjectCount++;
+                    return LineType.INVALID_OBJECT;
+                case ERROR:
+                    isErrorMsgStarted = true;
+                    return LineType.ERROR;
+                case WARNING:
+                    warningCount++;
+                    return isErrorMsgStarted ? LineType.ERROR : LineType.WARNING;
+                default:
+                    return rule.type;
+            }
+        }
+        return isErrorMsgStarted ? LineType.ERROR : LineType.INFO;
+    }
+
+    private boolean isSqlClBannerPrinted(String line) {
+        if (line.startsWith(SQLCL_BANNER_START_PREFIX) && SQLCL_BANNER_START_PATTERN.matcher(line).matches()) {
+            isSqlClBannerStarted = true;
+        } else if (line.startsWith(SQLCL_BANNER_END_PREFIX) && SQLCL_BANNER_END_PATTERN.matcher(line).matches()) {
+            isSqlClBannerStarted = false;
+            return true;
+        } else if (isSqlClBannerStarted || line.startsWith(SQLCL_DISCON_FROM_DB_PREFIX)
+                && SQLCL_DISCON_FROM_DB_PATTERN.matcher(line).matches()) {
+            return true;
+        }
+
+        return isSqlClBannerStarted;
+    }
+
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    public int getWarningCount() {
+        return warningCount;
+    }
+
+    public int getInvalidObjectCount() {
+        return invalidObjectCount;
+    }
+
+    public enum LineType {
+        SCRIPT_STARTED,
+        COMPILE_INVALIDS_STARTED,
+        BANNER,
+        INFO,
+        WARNING,
+        INVALID_OBJECTS_HEADER,
+        INVALID_OBJECT,
+        ERROR
+    }
+
+    private static class Rule {
+        private final LineType type;
+        private final String marker;
+        private final boolean isPrefix;
+        private final Pattern pattern;
+
+        private Rule(LineType type, String marker, boolean isPrefix, Pattern pattern) {
+            this.type = type;
+            this.marker = marker;
+            this.isPrefix = isPrefix;
+            this.pattern = pattern;
+        }
+
+        private boolean matches(String line) {
+            boolean hasMarker = isPrefix ? line.startsWith(marker) : line.contains(marker);
+            return hasMarker && (pattern == null || pattern.matcher(line).matches());
+        }
+    }
+}
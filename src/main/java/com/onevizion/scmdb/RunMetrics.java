@@ -0,0 +1,91 @@
+package com.onevizion.scmdb;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Wall-clock durations of the phases of one run and counters of the work done by it. Phases are measured
+ * separately even when they overlap or nest, like the directory scan and the connection setup or the db_script
+ * read within the diff, so their sum can exceed the run time. Time of scripts executed in parallel is summed up.
+ */
+public class RunMetrics {
+    public static final String CONTEXT_PHASE = "context";
+    public static final String SCAN_PHASE = "scan";
+    public static final String CONNECTION_PHASE = "connection";
+    public static final String SQLCL_PROBE_PHASE = "sqlcl_probe";
+    public static final String FINGERPRINT_PHASE = "fingerprint";
+    public static final String READ_DB_SCRIPTS_PHASE = "read_db_scripts";
+    public static final String DIFF_PHASE = "diff";
+    public static final String ROLLBACKS_PHASE = "rollbacks";
+    public static final String EXECUTE_PHASE = "execute";
+    public static final String RECOMPILE_PHASE = "recompile";
+    public static final String METADATA_WRITES_PHASE = "metadata_writes";
+    public static final String DDL_PHASE = "ddl";
+
+    public static final String FILES_SCANNED = "files_scanned";
+    public static final String FILES_HASHED = "files_hashed";
+    public static final String BYTES_HASHED = "bytes_hashed";
+    public static final String DB_SCRIPT_ROWS_FETCHED = "db_script_rows_fetched";
+    public static final String DDL_ROWS_FETCHED = "ddl_rows_fetched";
+    public static final String SCRIPTS_EXECUTED = "scripts_executed";
+    public static final String SCRIPTS_FAILED = "scripts_failed";
+    public static final String DDL_FILES_WRITTEN = "ddl_files_written";
+    public static final String DDL_FILES_UNCHANGED = "ddl_files_unchanged";
+    public static final String DDL_FILES_DELETED = "ddl_files_deleted";
+
+    private final long startMillis = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Long> phaseNanos = new LinkedHashMap<>();
+    private final Map<String, Long> counters = new TreeMap<>();
+
+    /**
+     * Adds the time passed since {@code startNanos}, a value of {@link System#nanoTime()}, to the phase.
+     */
+    public synchronized void recordPhase(String phase, long startNanos) {
+        phaseNanos.merge(phase, System.nanoTime() - startNanos, Long::sum);
+    }
+
+    public void time(String phase, Runnable action) {
+        long start = System.nanoTime();
+        try {
+            action.run();
+        } finally {
+            recordPhase(phase, start);
+        }
+    }
+
+    public void increment(String counter) {
+        add(counter, 1);
+    }
+
+    public synchronized void add(String counter, long delta) {
+        counters.merge(counter, delta, Long::sum);
+    }
+
+    public synchronized Map<String, Long> getPhaseMillis() {
+        Map<String, Long> phaseMillis = new LinkedHashMap<>();
+        phaseNanos.forEach((phase, nanos) -> phaseMillis.put(phase, TimeUnit.NANOSECONDS.toMillis(nanos)));
+        return phaseMillis;
+    }
+
+    public synchronized Map<String, Long> getCounters() {
+        return new TreeMap<>(counters);
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public long getDurationMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    public String formatPhases() {
+        return getPhaseMillis().entrySet().stream()
+                               .map(phase -> phase.getKey() + " " + phase.getValue() + " ms")
+                               .collect(Collectors.joining(", "));
+    }
+}
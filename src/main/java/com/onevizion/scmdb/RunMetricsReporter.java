@@ -0,0 +1,138 @@
+package com.onevizion.scmdb;
+
+import org.apache.commons.io.FilenameUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Writes {@link RunMetrics} as a JSON report and as a Prometheus textfile collector file when the context is closed,
+ * so runs which stop early are reported too. Files are replaced atomically, a collector never reads a partial file.
+ * Each target of a fan-out is reported to files of its own, named after the target.
+ */
+@Component
+public class RunMetricsReporter {
+    private static final String METRIC_PREFIX = "scmdb_run_";
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @Resource
+    private AppArguments appArguments;
+
+    @Resource
+    private RunMetrics runMetrics;
+
+    @PreDestroy
+    public void report() {
+        if (appArguments.getMetricsJsonFile() != null) {
+            write(getTargetFile(appArguments.getMetricsJsonFile()), formatJson());
+        }
+        if (appArguments.getMetricsPrometheusFile() != null) {
+            write(getTargetFile(appArguments.getMetricsPrometheusFile()), formatPrometheus());
+        }
+    }
+
+    private String formatJson() {
+        StringBuilder json = new StringBuilder("{\n");
+        json.append("  \"start\": ").append(quote(Instant.ofEpochMilli(runMetrics.getStartMillis()).toString()))
+            .append(",\n");
+        json.append("  \"schema\": ").append(quote(getSchemaName())).append(",\n");
+        if (appArguments.getTargetName() != null) {
+            json.append("  \"target\": ").append(quote(appArguments.getTargetName())).append(",\n");
+        }
+        json.append("  \"durationMs\": ").append(runMetrics.getDurationMillis()).append(",\n");
+        json.append("  \"phasesMs\": ").append(formatJsonObject(runMetrics.getPhaseMillis())).append(",\n");
+        json.append("  \"counters\": ").append(formatJsonObject(runMetrics.getCounters())).append("\n");
+        return json.append("}\n").toString();
+    }
+
+    private String formatJsonObject(Map<String, Long> values) {
+        if (values.isEmpty()) {
+            return "{}";
+        }
+        return values.entrySet().stream()
+                     .map(value -> "    " + quote(value.getKey()) + ": " + value.getValue())
+                     .collect(Collectors.joining(",\n", "{\n", "\n  }"));
+    }
+
+    private String formatPrometheus() {
+        // schemas of different databases of a fan-out can have the same name
+        String schemaLabel = "schema=" + quote(getSchemaName()) + (appArguments.getTargetName() == null ? ""
+                : ",target=" + quote(appArguments.getTargetName()));
+        StringBuilder metrics = new StringBuilder();
+        appendGauge(metrics, "start_timestamp_seconds", "Start time of the last run.", schemaLabel,
+                formatSeconds(runMetrics.getStartMillis()));
+        appendGauge(metrics, "duration_seconds", "Wall-clock time of the last run.", schemaLabel,
+                formatSeconds(runMetrics.getDurationMillis()));
+
+        Map<String, Long> phaseMillis = runMetrics.getPhaseMillis();
+        if (!phaseMillis.isEmpty()) {
+            appendHeader(metrics, "phase_seconds", "Wall-clock time of a phase of the last run.");
+            phaseMillis.forEach((phase, millis) -> appendSample(metrics, "phase_seconds",
+                    schemaLabel + ",phase=" + quote(phase), formatSeconds(millis)));
+        }
+
+        runMetrics.getCounters().forEach((counter, value) -> appendGauge(metrics, counter,
+                "Value of the " + counter.replace('_', ' ') + " counter of the last run.", schemaLabel,
+                String.valueOf(value)));
+        return metrics.toString();
+    }
+
+    private void appendGauge(StringBuilder metrics, String name, String help, String labels, String value) {
+        appendHeader(metrics, name, help);
+        appendSample(metrics, name, labels, value);
+    }
+
+    private void appendHeader(StringBuilder metrics, String name, String help) {
+        metrics.append("# HELP ").append(METRIC_PREFIX).append(name).append(' ').append(help).append('\n');
+        metrics.append("# TYPE ").append(METRIC_PREFIX).append(name).append(" gauge\n");
+    }
+
+    private void appendSample(StringBuilder metrics, String name, String labels, String value) {
+        metrics.append(METRIC_PREFIX).append(name).append('{').append(labels).append("} ").append(value).append('\n');
+    }
+
+    private String formatSeconds(long millis) {
+        return String.format(Locale.ROOT, "%.3f", millis / 1000.0);
+    }
+
+    private String getSchemaName() {
+        if (appArguments.getOwnerCredentials() == null) {
+            return "";
+        }
+        return appArguments.getOwnerCredentials().getSchemaName().toLowerCase();
+    }
+
+    private File getTargetFile(File file) {
+        if (appArguments.getTargetName() == null) {
+            return file;
+        }
+        String extension = FilenameUtils.getExtension(file.getName());
+        String name = FilenameUtils.getBaseName(file.getName()) + "-" + appArguments.getTargetName()
+                + (extension.isEmpty() ? "" : "." + extension);
+        return new File(file.getAbsoluteFile().getParentFile(), name);
+    }
+
+    private void write(File file, String content) {
+        try {
+            AtomicFiles.write(file, content.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            logger.warn("Can't write run metrics [{}]: {}", file.getAbsolutePath(), e.getMessage());
+        }
+    }
+
+    // JSON string literals and Prometheus label values share the escaping of backslashes, quotes and line feeds
+    private static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+    }
+}
@@ -0,0 +1,11 @@
+package com.onevizion.scmdb;
+
+/**
+ * Stops the update of a database which needs a manual action first, like a fix of a failed script. The reason is
+ * logged before the exception is thrown, the message only names it for the summary of a fan-out.
+ */
+public class RunStoppedException extends RuntimeException {
+    public RunStoppedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,171 @@
+package com.onevizion.scmdb;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+@Component
+public class ScanManifest {
+    private static final String HEADER = "# scmdb scan manifest v1";
+    private static final String SEPARATOR = "\t";
+    private static final int HASH_LENGTH = 40;
+
+    // files modified this close to the manifest write aren't cached: a change within the same mtime tick is invisible
+    private static final long RACY_MTIME_WINDOW_MS = 2000L;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @Resource
+    private AppArguments appArguments;
+
+    private Map<String, Entry> savedEntries = new ConcurrentHashMap<>();
+    private final Map<String, Entry> scannedEntries = new ConcurrentHashMap<>();
+
+    public void load() {
+        savedEntries = new ConcurrentHashMap<>();
+        scannedEntries.clear();
+
+        File manifestFile = appArguments.getManifestFile();
+        if (manifestFile == null || !manifestFile.isFile()) {
+            return;
+        }
+
+        Map<String, Entry> entries = new ConcurrentHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(manifestFile.toPath(), StandardCharsets.UTF_8)) {
+            if (!HEADER.equals(reader.readLine())) {
+                throw new IllegalStateException("unknown header");
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Entry entry = Entry.parse(line);
+                entries.put(entry.path, entry);
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Scan manifest [{}] is unreadable or corrupt and will be rebuilt: {}",
+                    manifestFile.getAbsolutePath(), e.getMessage());
+            return;
+        }
+        savedEntries = entries;
+        logger.debug("Loaded {} entries from scan manifest [{}]", entries.size(), manifestFile.getAbsolutePath());
+    }
+
+    public String getHash(File file, Function<File, String> hashFunction) {
+        Entry stat = Entry.stat(file);
+        if (stat == null) {
+            return hashFunction.apply(file);
+        }
+
+        Entry saved = savedEntries.get(stat.path);
+        if (saved != null && saved.hasSameStat(stat)) {
+            scannedEntries.put(saved.path, saved);
+            return saved.hash;
+        }
+
+        stat.hash = hashFunction.apply(file);
+        scannedEntries.put(stat.path, stat);
+        return stat.hash;
+    }
+
+    public void save() {
+        File manifestFile = appArguments.getManifestFile();
+        if (manifestFile == null || scannedEntries.equals(savedEntries)) {
+            return;
+        }
+
+        long racyBound = System.currentTimeMillis() - RACY_MTIME_WINDOW_MS;
+        try {
+            AtomicFiles.write(manifestFile, tmpFile -> {
+                try (BufferedWriter writer = Files.newBufferedWriter(tmpFile, StandardCharsets.UTF_8)) {
+                    writer.write(HEADER);
+                    writer.newLine();
+                    for (Entry entry : scannedEntries.values()) {
+                        if (entry.mtime < racyBound && entry.isWritable()) {
+                            writer.write(entry.format());
+                            writer.newLine();
+                        }
+                    }
+                }
+            });
+            savedEntries = new ConcurrentHashMap<>(scannedEntries);
+        } catch (IOException e) {
+            logger.warn("Can't save scan manifest [{}]: {}", manifestFile.getAbsolutePath(), e.getMessage());
+        }
+    }
+
+    private static final class Entry {
+        private final String path;
+        private final long size;
+        private final long mtime;
+        private final String fileKey;
+        private String hash;
+
+        private Entry(String path, long size, long mtime, String fileKey, String hash) {
+            this.path = path;
+            this.size = size;
+            this.mtime = mtime;
+            this.fileKey = fileKey;
+            this.hash = hash;
+        }
+
+        private static Entry stat(File file) {
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+                Object fileKey = attrs.fileKey();
+                return new Entry(file.getAbsolutePath(), attrs.size(), attrs.lastModifiedTime().toMillis(),
+                        fileKey == null ? "" : fileKey.toString(), null);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        private static Entry parse(String line) {
+            String[] parts = line.split(SEPARATOR, -1);
+            if (parts.length != 5 || parts[4].length() != HASH_LENGTH) {
+                throw new IllegalStateException("malformed entry [" + line + "]");
+            }
+            return new Entry(parts[0], Long.parseLong(parts[1]), Long.parseLong(parts[2]), parts[3], parts[4]);
+        }
+
+        private boolean hasSameStat(Entry stat) {
+            return size == stat.size && mtime == stat.mtime && fileKey.equals(stat.fileKey);
+        }
+
+        private boolean isWritable() {
+            return hash != null && !path.contains(SEPARATOR) && !path.contains("\n") && !fileKey.contains(SEPARATOR);
+        }
+
+        private String format() {
+            return path + SEPARATOR + size + SEPARATOR + mtime + SEPARATOR + fileKey + SEPARATOR + hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Entry entry = (Entry) o;
+            return path.equals(entry.path) && hasSameStat(entry)
+                    && (hash != null ? hash.equals(entry.hash) : entry.hash == null);
+        }
+
+        @Override
+        public int hashCode() {
+            return path.hashCode();
+        }
+    }
+}
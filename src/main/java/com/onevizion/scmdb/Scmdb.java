@@ -4,33 +4,88 @@ import com.onevizion.scmdb.facade.DbScriptFacade;
 import oracle.ucp.jdbc.PoolDataSourceImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.context.ApplicationContext;
 import org.springframework.context.support.ClassPathXmlApplicationContext;
 
 import java.sql.SQLException;
 
 public class Scmdb {
     private static final Logger logger = LoggerFactory.getLogger(Scmdb.class);
+    private static final String COLOR_LOGGER_BEAN_NAME = "colorLogger";
 
     public static void main(String[] args) throws SQLException {
+        RunMetrics runMetrics = new RunMetrics();
+        long contextStart = System.nanoTime();
         logger.debug("Initialize spring beans");
-        ClassPathXmlApplicationContext ctx = new ClassPathXmlApplicationContext("classpath:beans.xml");
+        ClassPathXmlApplicationContext ctx = createContext(runMetrics);
+        ctx.registerShutdownHook();
+        runMetrics.recordPhase(RunMetrics.CONTEXT_PHASE, contextStart);
 
         AppArguments appArguments = ctx.getBean(AppArguments.class);
         appArguments.parse(args);
+        if (appArguments.getLogFile() != null) {
+            ctx.getBean(ColorLogger.class).addLogFile(appArguments.getLogFile());
+        }
+
+        if (appArguments.getTargetsFile() != null) {
+            ctx.getBean(TargetFanOut.class).run(args);
+            return;
+        }
 
-        DbScriptFacade sqlScriptsFacade = ctx.getBean(DbScriptFacade.class);
-        sqlScriptsFacade.init();
+        // the directory is scanned while the first connection is established
+        if (appArguments.getReportSlowest() == 0 && appArguments.getShowOutputScriptName() == null) {
+            ctx.getBean(DbScriptFacade.class).init();
+        }
+
+        configureDataSource(ctx, appArguments);
+
+        DbManager dbManager = ctx.getBean(DbManager.class);
+        try {
+            if (appArguments.getReportSlowest() > 0) {
+                dbManager.reportSlowestScripts();
+            } else if (appArguments.getShowOutputScriptName() != null) {
+                dbManager.showScriptOutput();
+            } else if (appArguments.isGenDdl()) {
+                dbManager.generateDdl();
+            } else {
+                dbManager.updateDb();
+            }
+        } catch (RunStoppedException e) {
+            System.exit(0);
+        }
+    }
 
+    static PoolDataSourceImpl configureDataSource(ApplicationContext ctx, AppArguments appArguments) throws SQLException {
         PoolDataSourceImpl ds = (PoolDataSourceImpl) ctx.getBean("dataSource");
         ds.setUser(appArguments.getOwnerCredentials().getSchemaName());
         ds.setPassword(appArguments.getOwnerCredentials().getPassword());
         ds.setURL(appArguments.getOwnerCredentials().getOracleUrl());
+        return ds;
+    }
 
-        DbManager dbManager = ctx.getBean(DbManager.class);
-        if (appArguments.isGenDdl()) {
-            dbManager.generateDdl();
-        } else {
-            dbManager.updateDb();
-        }
+    /**
+     * Creates the application context with the given metrics registered as a bean, so the time spent on the context
+     * itself is recorded into the same metrics.
+     */
+    static ClassPathXmlApplicationContext createContext(RunMetrics runMetrics) {
+        return createContext(runMetrics, null);
+    }
+
+    /**
+     * Creates the application context of a fan-out target. Logging is set up once per process, so the given logger
+     * replaces the logger of the context.
+     */
+    static ClassPathXmlApplicationContext createContext(RunMetrics runMetrics, ColorLogger colorLogger) {
+        ClassPathXmlApplicationContext ctx = new ClassPathXmlApplicationContext(new String[]{"classpath:beans.xml"}, false);
+        ctx.addBeanFactoryPostProcessor(beanFactory -> {
+            beanFactory.registerSingleton("runMetrics", runMetrics);
+            if (colorLogger != null) {
+                ((BeanDefinitionRegistry) beanFactory).removeBeanDefinition(COLOR_LOGGER_BEAN_NAME);
+                beanFactory.registerSingleton(COLOR_LOGGER_BEAN_NAME, colorLogger);
+            }
+        });
+        ctx.refresh();
+        return ctx;
     }
 }
\ No newline at end of file
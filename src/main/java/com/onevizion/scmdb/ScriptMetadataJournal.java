@@ -0,0 +1,197 @@
+package com.onevizion.scmdb;
+
+import com.onevizion.scmdb.dao.DbScriptDaoOra;
+import com.onevizion.scmdb.vo.DbCnnCredentials;
+import com.onevizion.scmdb.vo.ScriptStatus;
+import com.onevizion.scmdb.vo.ScriptType;
+import com.onevizion.scmdb.vo.SqlScript;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Write-behind journal of db_script metadata changes. Every change is appended and synced to a local file first and
+ * written to the database in batches on {@link #flush()}. Changes left by a killed process are replayed by
+ * {@link #recover()}; replayed inserts skip scripts which are already saved, so a replay is idempotent. Script text
+ * isn't journaled, records keep the path of the script file and the text is read from it on replay.
+ */
+@Component
+public class ScriptMetadataJournal {
+    private static final String HEADER = "# scmdb metadata journal v1";
+    private static final int CREATE_RECORD_LENGTH = 13;
+    private static final String SEPARATOR = "\t";
+    private static final String CREATE_RECORD = "C";
+    private static final String DELETE_RECORD = "D";
+    private static final String NULL_VALUE = "-";
+    private static final String SCMDB_HOME_DIRECTORY_NAME = ".scmdb";
+    private static final String JOURNAL_FILE_EXTENSION = ".journal";
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @Resource
+    private AppArguments appArguments;
+
+    @Resource
+    private DbScriptDaoOra sqlScriptDaoOra;
+
+    private final List<SqlScript> pendingCreates = new ArrayList<>();
+    private final List<Long> pendingDeletes = new ArrayList<>();
+
+    public synchronized void create(SqlScript script) {
+        append(CREATE_RECORD + SEPARATOR + encode(script.getName()) + SEPARATOR + script.getFileHash() + SEPARATOR
+                + script.getType().getId() + SEPARATOR + script.getStatus().getId() + SEPARATOR
+                + (script.getTs() == null ? NULL_VALUE : String.valueOf(script.getTs().getTime())) + SEPARATOR
+                + encode(script.getFile() == null ? null : script.getFile().getAbsolutePath()) + SEPARATOR
+                + encode(script.getOutput()) + SEPARATOR
+                + (script.getExecStart() == null ? NULL_VALUE : String.valueOf(script.getExecStart().getTime()))
+                + SEPARATOR + format(script.getExecDurationMs()) + SEPARATOR + format(script.getExecOverheadMs())
+                + SEPARATOR + format(script.getRecompileMs()) + SEPARATOR + format(script.getExitCode()));
+        pendingCreates.add(script);
+    }
+
+    public synchronized void delete(Long id) {
+        append(DELETE_RECORD + SEPARATOR + id);
+        pendingDeletes.add(id);
+    }
+
+    public synchronized void recover() {
+        File journalFile = getJournalFile();
+        if (!journalFile.isFile()) {
+            return;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(journalFile.toPath(), StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            if (!HEADER.equals(header)) {
+                throw new IllegalStateException("unknown header");
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                parseRecord(line);
+            }
+        } catch (IOException | RuntimeException e) {
+            // a record torn by a crash is the last one and was never flushed, the records before it are replayed
+            logger.warn("Metadata journal [{}] is truncated: {}", journalFile.getAbsolutePath(), e.getMessage());
+        }
+
+        if (pendingCreates.isEmpty() && pendingDeletes.isEmpty()) {
+            deleteJournal();
+        } else {
+            logger.info("Replaying {} unsaved changes of db_script from [{}]", pendingCreates.size() + pendingDeletes.size(),
+                    journalFile.getAbsolutePath());
+            flush();
+        }
+    }
+
+    @PreDestroy
+    public synchronized void flush() {
+        if (pendingCreates.isEmpty() && pendingDeletes.isEmpty()) {
+            return;
+        }
+        if (!pendingDeletes.isEmpty()) {
+            sqlScriptDaoOra.deleteByIds(pendingDeletes);
+            pendingDeletes.clear();
+        }
+        if (!pendingCreates.isEmpty()) {
+            sqlScriptDaoOra.createAllIfAbsent(pendingCreates);
+            pendingCreates.clear();
+        }
+        deleteJournal();
+    }
+
+    private void deleteJournal() {
+        File journalFile = getJournalFile();
+        if (journalFile.exists() && !journalFile.delete()) {
+            throw new RuntimeException("Can't delete metadata journal [" + journalFile.getAbsolutePath() + "]");
+        }
+    }
+
+    private void parseRecord(String line) {
+        String[] parts = line.split(SEPARATOR, -1);
+        if (DELETE_RECORD.equals(parts[0]) && parts.length == 2) {
+            pendingDeletes.add(Long.valueOf(parts[1]));
+        } else if (CREATE_RECORD.equals(parts[0]) && parts.length == CREATE_RECORD_LENGTH) {
+            SqlScript script = new SqlScript();
+            script.setName(decode(parts[1]));
+            script.setFileHash(parts[2]);
+            script.setType(ScriptType.getById(Long.valueOf(parts[3])));
+            script.setStatus(ScriptStatus.getById(Long.valueOf(parts[4])));
+            script.setTs(NULL_VALUE.equals(parts[5]) ? new Date() : new Date(Long.parseLong(parts[5])));
+            if (!NULL_VALUE.equals(parts[6]) && new File(decode(parts[6])).isFile()) {
+                // a script deleted since the crash is saved without text
+                script.setFile(new File(decode(parts[6])));
+            }
+            script.setOutput(decode(parts[7]));
+            script.setExecStart(NULL_VALUE.equals(parts[8]) ? null : new Date(Long.parseLong(parts[8])));
+            script.setExecDurationMs(parseLong(parts[9]));
+            script.setExecOverheadMs(parseLong(parts[10]));
+            script.setRecompileMs(parseLong(parts[11]));
+            script.setExitCode(NULL_VALUE.equals(parts[12]) ? null : Integer.valueOf(parts[12]));
+            pendingCreates.add(script);
+        } else {
+            throw new IllegalStateException("malformed record");
+        }
+    }
+
+    private void append(String record) {
+        File journalFile = getJournalFile();
+        try {
+            boolean isNew = !journalFile.exists();
+            if (isNew) {
+                Files.createDirectories(journalFile.getAbsoluteFile().getParentFile().toPath());
+            }
+            try (FileOutputStream out = new FileOutputStream(journalFile, true)) {
+                Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                if (isNew) {
+                    writer.write(HEADER);
+                    writer.write('\n');
+                }
+                writer.write(record);
+                writer.write('\n');
+                writer.flush();
+                out.getFD().sync();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Can't write metadata journal [" + journalFile.getAbsolutePath() + "]", e);
+        }
+    }
+
+    private File getJournalFile() {
+        DbCnnCredentials credentials = appArguments.getOwnerCredentials();
+        return new File(System.getProperty("user.home") + File.separator + SCMDB_HOME_DIRECTORY_NAME + File.separator
+                + DigestUtils.sha1Hex(credentials.getOracleUrl() + SEPARATOR + credentials.getSchemaName().toLowerCase())
+                + JOURNAL_FILE_EXTENSION);
+    }
+
+    private static String encode(String value) {
+        return value == null ? NULL_VALUE : Base64.getEncoder().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String format(Number value) {
+        return value == null ? NULL_VALUE : value.toString();
+    }
+
+    private static Long parseLong(String value) {
+        return NULL_VALUE.equals(value) ? null : Long.valueOf(value);
+    }
+
+    private static String decode(String value) {
+        return NULL_VALUE.equals(value) ? null : new String(Base64.getDecoder().decode(value), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,257 @@
+package com.onevizion.scmdb;
+
+import com.onevizion.scmdb.facade.DdlFacade;
+import com.onevizion.scmdb.vo.ScriptStatement;
+import com.onevizion.scmdb.vo.SqlScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs scripts concurrently while keeping name order for every pair of scripts that touch the same db object.
+ * Owner and user schema scripts are dispatched to separate lanes of sessions.
+ */
+@Component
+public class ScriptScheduler {
+    private static final Pattern DML_TARGET = Pattern.compile(
+            "^(?:insert\\s+(?:all\\s+)?into|update|delete\\s+from|delete|merge\\s+into|truncate\\s+table|lock\\s+table" +
+                    "|rename|(?:grant|revoke)\\s.+?\\son)\\s+([\\w$#.]+)", Pattern.DOTALL);
+    private static final Pattern DDL_TARGET = Pattern.compile(
+            "^(?:create|alter|drop)" +
+                    "(?:\\s+(?:or\\s+replace|unique|bitmap|force|noforce|global\\s+temporary|public|editionable|noneditionable|materialized))*" +
+                    "\\s+(?:\\w+\\s+)?(?:body\\s+)?([\\w$#.]+)", Pattern.DOTALL);
+    private static final Pattern ON_TARGET = Pattern.compile(
+            "^create\\b.*?\\b(?:index|trigger)\\s+[\\w$#.]+\\s.*?\\bon\\s+([\\w$#.]+)", Pattern.DOTALL);
+    private static final Pattern REMOVABLE_TEXT = Pattern.compile("'(?:[^']|'')*'|--[^\\n]*|/\\*.*?\\*/|\"", Pattern.DOTALL);
+    private static final Pattern IDENTIFIER = Pattern.compile("[a-z_][\\w$#]*");
+    private static final Set<String> SIDE_EFFECT_FREE_STATEMENTS = new HashSet<>(Arrays.asList(
+            "select", "with", "commit", "rollback", "savepoint", "set", "alter session"));
+    private static final Set<String> OPAQUE_COMMANDS = new HashSet<>(Arrays.asList(
+            "sta", "start", "exec", "execute", "ho", "host", "conn", "connect"));
+
+    @Resource
+    private AppArguments appArguments;
+
+    @Resource
+    private DdlFacade ddlFacade;
+
+    @Resource
+    private InvalidObjectsCompiler invalidObjectsCompiler;
+
+    /**
+     * Executes scripts with {@code task}, which returns false when a script failed. After the first failure no new
+     * scripts are dispatched, scripts already running are awaited and false is returned. Invalid objects are compiled
+     * only while no script is running: when a compilation is due no new scripts are dispatched until it's done.
+     */
+    public boolean execute(List<SqlScript> scripts, Predicate<SqlScript> task) {
+        int scriptsCount = scripts.size();
+        List<Footprint> footprints = new ArrayList<>(scriptsCount);
+        scripts.forEach(script -> footprints.add(createFootprint(script)));
+
+        List<List<Integer>> successors = new ArrayList<>(scriptsCount);
+        int[] pendingPredecessors = new int[scriptsCount];
+        for (int i = 0; i < scriptsCount; i++) {
+            successors.add(new ArrayList<>());
+            for (int j = 0; j < i; j++) {
+                if (footprints.get(j).conflictsWith(footprints.get(i))) {
+                    successors.get(j).add(i);
+                    pendingPredecessors[i]++;
+                }
+            }
+        }
+
+        int laneSize = appArguments.getParallelScripts();
+        Lane ownerLane = new Lane(laneSize);
+        Lane userLane = new Lane(laneSize);
+        BlockingQueue<Completion> completions = new LinkedBlockingQueue<>();
+        for (int i = 0; i < scriptsCount; i++) {
+            if (pendingPredecessors[i] == 0) {
+                getLane(scripts.get(i), ownerLane, userLane).ready.add(i);
+            }
+        }
+
+        boolean isFailed = false;
+        RuntimeException taskException = null;
+        invalidObjectsCompiler.setScheduled(true);
+        try {
+            while (true) {
+                boolean isCompileDue = invalidObjectsCompiler.isCompileDue();
+                if (!isFailed && !isCompileDue) {
+                    ownerLane.dispatch(scripts, task, completions);
+                    userLane.dispatch(scripts, task, completions);
+                }
+                if (ownerLane.running == 0 && userLane.running == 0) {
+                    if (isCompileDue && !isFailed) {
+                        invalidObjectsCompiler.compilePending();
+                        continue;
+                    }
+                    break;
+                }
+
+                Completion completion = completions.take();
+                getLane(scripts.get(completion.index), ownerLane, userLane).running--;
+                if (completion.exception != null && taskException == null) {
+                    taskException = completion.exception;
+                }
+                if (!completion.isSucceeded) {
+                    isFailed = true;
+                    continue;
+                }
+                for (int successor : successors.get(completion.index)) {
+                    if (--pendingPredecessors[successor] == 0) {
+                        getLane(scripts.get(successor), ownerLane, userLane).ready.add(successor);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Execution of scripts was interrupted", e);
+        } finally {
+            invalidObjectsCompiler.setScheduled(false);
+            ownerLane.executor.shutdownNow();
+            userLane.executor.shutdownNow();
+        }
+
+        if (taskException != null) {
+            throw taskException;
+        }
+        return !isFailed;
+    }
+
+    private Lane getLane(SqlScript script, Lane ownerLane, Lane userLane) {
+        return script.isUserSchemaScript() ? userLane : ownerLane;
+    }
+
+    /**
+     * Collects names of objects a script changes and identifiers it refers to. Scripts running anonymous blocks,
+     * nested scripts or statements which can't be recognized may touch anything and are executed as barriers.
+     */
+    private Footprint createFootprint(SqlScript script) {
+        Footprint footprint = new Footprint();
+        SqlStatementReader reader = new SqlStatementReader(new StringReader(script.getText()));
+        try {
+            ScriptStatement statement;
+            while ((statement = reader.next()) != null) {
+                if (!addStatement(footprint, statement)) {
+                    return Footprint.OPAQUE;
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Can't read script [" + script.getName() + "]", e);
+        }
+        return footprint;
+    }
+
+    private boolean addStatement(Footprint footprint, ScriptStatement statement) {
+        String text = REMOVABLE_TEXT.matcher(statement.getText()).replaceAll(" ").trim().toLowerCase();
+        if (statement.getType() == ScriptStatement.Type.COMMAND) {
+            String command = text.split("\\s+", 2)[0];
+            return !command.startsWith("@") && !command.startsWith("!") && !OPAQUE_COMMANDS.contains(command);
+        }
+
+        String[] words = text.split("\\s+", 3);
+        if (statement.getType() == ScriptStatement.Type.PLSQL && !"create".equals(words[0])) {
+            return false;
+        }
+        boolean isSideEffectFree = SIDE_EFFECT_FREE_STATEMENTS.contains(words[0])
+                || words.length > 1 && SIDE_EFFECT_FREE_STATEMENTS.contains(words[0] + " " + words[1]);
+        if (statement.getType() == ScriptStatement.Type.PLSQL || !isSideEffectFree) {
+            Set<String> changedNames = ddlFacade.findChangedDbObjectNames(text);
+            addTarget(changedNames, DML_TARGET.matcher(text));
+            addTarget(changedNames, DDL_TARGET.matcher(text));
+            addTarget(changedNames, ON_TARGET.matcher(text));
+            if (changedNames.isEmpty()) {
+                return false;
+            }
+            changedNames.forEach(name -> footprint.changedNames.add(stripSchema(name)));
+        }
+
+        Matcher identifiers = IDENTIFIER.matcher(text);
+        while (identifiers.find()) {
+            footprint.referencedNames.add(identifiers.group());
+        }
+        return true;
+    }
+
+    private void addTarget(Set<String> names, Matcher matcher) {
+        if (matcher.find()) {
+            names.add(matcher.group(1));
+        }
+    }
+
+    private String stripSchema(String name) {
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+
+    private static class Footprint {
+        private static final Footprint OPAQUE = new Footprint();
+
+        private final Set<String> changedNames = new HashSet<>();
+        private final Set<String> referencedNames = new HashSet<>();
+
+        private boolean conflictsWith(Footprint other) {
+            return this == OPAQUE || other == OPAQUE
+                    || !Collections.disjoint(changedNames, other.changedNames)
+                    || !Collections.disjoint(changedNames, other.referencedNames)
+                    || !Collections.disjoint(referencedNames, other.changedNames);
+        }
+    }
+
+    private static class Lane {
+        private final int size;
+        private final ExecutorService executor;
+        private final PriorityQueue<Integer> ready = new PriorityQueue<>();
+        private int running;
+
+        private Lane(int size) {
+            this.size = size;
+            executor = Executors.newFixedThreadPool(size);
+        }
+
+        private void dispatch(List<SqlScript> scripts, Predicate<SqlScript> task, BlockingQueue<Completion> completions) {
+            while (running < size && !ready.isEmpty()) {
+                int index = ready.poll();
+                running++;
+                executor.execute(() -> {
+                    try {
+                        completions.add(new Completion(index, task.test(scripts.get(index)), null));
+                    } catch (RuntimeException e) {
+                        completions.add(new Completion(index, false, e));
+                    } catch (Throwable e) {
+                        // every dispatched script has to complete, otherwise the scheduler waits for it forever
+                        completions.add(new Completion(index, false,
+                                new RuntimeException("Can't execute script [" + scripts.get(index).getName() + "]", e)));
+                    }
+                });
+            }
+        }
+    }
+
+    private static class Completion {
+        private final int index;
+        private final boolean isSucceeded;
+        private final RuntimeException exception;
+
+        private Completion(int index, boolean isSucceeded, RuntimeException exception) {
+            this.index = index;
+            this.isSucceeded = isSucceeded;
+            this.exception = exception;
+        }
+    }
+}
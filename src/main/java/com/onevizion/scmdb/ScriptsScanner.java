@@ -0,0 +1,85 @@
+package com.onevizion.scmdb;
+
+import com.onevizion.scmdb.vo.SqlScript;
+import org.apache.commons.io.FileUtils;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+@Component
+public class ScriptsScanner {
+    private static final int QUEUED_FILES_PER_THREAD = 4;
+
+    @Resource
+    private AppArguments appArguments;
+
+    @Resource
+    private ScanManifest scanManifest;
+
+    @Resource
+    private RunMetrics runMetrics;
+
+    public List<SqlScript> scan(File scriptsDirectory) {
+        List<File> scriptFiles = (List<File>) FileUtils.listFiles(scriptsDirectory, new String[]{"sql"}, false);
+        runMetrics.add(RunMetrics.FILES_SCANNED, scriptFiles.size());
+
+        scanManifest.load();
+        List<SqlScript> scripts;
+        int threads = Math.min(appArguments.getScanThreads(), scriptFiles.size());
+        if (threads <= 1) {
+            scripts = scriptFiles.stream()
+                                 .map(this::createScript)
+                                 .collect(Collectors.toList());
+        } else {
+            scripts = scanInParallel(scriptFiles, threads);
+        }
+        scanManifest.save();
+        return scripts;
+    }
+
+    private List<SqlScript> scanInParallel(List<File> scriptFiles, int threads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * QUEUED_FILES_PER_THREAD), new ThreadPoolExecutor.CallerRunsPolicy());
+        try {
+            List<Future<SqlScript>> futures = new ArrayList<>(scriptFiles.size());
+            for (File scriptFile : scriptFiles) {
+                futures.add(executor.submit(() -> createScript(scriptFile)));
+            }
+
+            List<SqlScript> scripts = new ArrayList<>(scriptFiles.size());
+            for (Future<SqlScript> future : futures) {
+                scripts.add(future.get());
+            }
+            return scripts;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Scanning of scripts directory was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException("Can't scan scripts directory", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private SqlScript createScript(File scriptFile) {
+        return SqlScript.create(scriptFile, scanManifest.getHash(scriptFile, this::hashFile));
+    }
+
+    private String hashFile(File scriptFile) {
+        runMetrics.increment(RunMetrics.FILES_HASHED);
+        runMetrics.add(RunMetrics.BYTES_HASHED, scriptFile.length());
+        return SqlScript.hashFile(scriptFile);
+    }
+}
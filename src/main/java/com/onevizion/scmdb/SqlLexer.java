@@ -0,0 +1,364 @@
+package com.onevizion.scmdb;
+
+import com.onevizion.scmdb.vo.DbObjectType;
+import com.onevizion.scmdb.vo.DdlEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Single pass lexer which finds DDL statements in a script and reports them as {@link DdlEvent}s. Comments, string
+ * literals, q-quoted strings and PL/SQL blocks are skipped as units; DDL in string literals of PL/SQL blocks and exec
+ * calls (dynamic SQL) is lexed recursively. Verbs and object types are taken from the change keywords of
+ * {@link DbObjectType}.
+ */
+public class SqlLexer {
+    private static final String COMMENT_VERB = "comment";
+    private static final String CREATE_VERB = "create";
+    private static final Set<String> DDL_VERBS = new HashSet<>(Arrays.asList("create", "alter", "drop", COMMENT_VERB));
+    private static final Set<String> DDL_MODIFIERS = new HashSet<>(Arrays.asList(
+            "or", "replace", "and", "compile", "resolve", "editionable", "noneditionable", "editioning", "force",
+            "noforce", "unique", "bitmap", "global", "temporary", "public"));
+    private static final Set<String> PLSQL_UNITS = new HashSet<>(Arrays.asList(
+            "package", "trigger", "type", "procedure", "function", "library", "java"));
+    private static final Set<String> PLSQL_BLOCK_STARTS = new HashSet<>(Arrays.asList("declare", "begin"));
+    private static final Set<String> LINE_COMMANDS = new HashSet<>(Arrays.asList(
+            "acc", "accept", "cd", "cl", "clear", "col", "column", "conn", "connect", "def", "define", "desc",
+            "describe", "exec", "execute", "ho", "host", "pau", "pause", "pri", "print", "pro", "prompt", "rem",
+            "remark", "set", "sho", "show", "spo", "spool", "sta", "start", "timing", "undef", "undefine", "var",
+            "variable", "whenever"));
+    private static final Set<String> CALL_COMMANDS = new HashSet<>(Arrays.asList("exec", "execute"));
+    private static final Map<String, Map<String, DbObjectType>> TYPES_BY_VERB = createTypesByVerb();
+
+    private final String text;
+    private int pos;
+    private TokenType tokenType;
+    private String token;
+
+    public SqlLexer(String text) {
+        this.text = text;
+    }
+
+    public List<DdlEvent> readDdlEvents() {
+        List<DdlEvent> events = new ArrayList<>();
+        readDdlEvents(events::add);
+        return events;
+    }
+
+    public void readDdlEvents(Consumer<DdlEvent> consumer) {
+        while (next() != TokenType.EOF) {
+            if (tokenType == TokenType.WORD && LINE_COMMANDS.contains(token)) {
+                skipLineCommand(CALL_COMMANDS.contains(token), consumer);
+            } else if (tokenType == TokenType.SYMBOL && ("@".equals(token) || "!".equals(token))) {
+                skipLineCommand(false, consumer);
+            } else if (tokenType == TokenType.WORD && DDL_VERBS.contains(token)) {
+                readDdl(consumer);
+            } else if (tokenType == TokenType.WORD && PLSQL_BLOCK_STARTS.contains(token)
+                    || tokenType == TokenType.SYMBOL && "<".equals(token)) {
+                skipBlock(consumer);
+            } else if (tokenType != TokenType.END_OF_BLOCK && !isStatementEnd()) {
+                skipStatement();
+            }
+        }
+    }
+
+    private void readDdl(Consumer<DdlEvent> consumer) {
+        String verb = token;
+        if (COMMENT_VERB.equals(verb)) {
+            readComment(consumer);
+            return;
+        }
+
+        next();
+        while (tokenType == TokenType.WORD && DDL_MODIFIERS.contains(token)) {
+            next();
+        }
+        if (tokenType != TokenType.WORD) {
+            skipStatement();
+            return;
+        }
+
+        String typeWord = token;
+        boolean isPlsqlUnit = CREATE_VERB.equals(verb) && PLSQL_UNITS.contains(typeWord);
+        int mark = pos;
+        if (next() == TokenType.WORD && "body".equals(token)) {
+            typeWord += " body";
+        } else {
+            rewind(mark);
+        }
+
+        next();
+        List<String> nameParts = readName();
+        DbObjectType type = TYPES_BY_VERB.getOrDefault(verb, new HashMap<>()).get(typeWord);
+        if (type != null && !nameParts.isEmpty()) {
+            consumer.accept(new DdlEvent(verb, type, nameParts.get(nameParts.size() - 1)));
+        }
+
+        if (isPlsqlUnit) {
+            skipBlock(consumer);
+        } else {
+            skipStatement();
+        }
+    }
+
+    private void readComment(Consumer<DdlEvent> consumer) {
+        if (next() == TokenType.WORD && "on".equals(token) && next() == TokenType.WORD) {
+            DbObjectType type = TYPES_BY_VERB.get(COMMENT_VERB).get(token);
+            boolean isColumn = "column".equals(token);
+            next();
+            List<String> nameParts = readName();
+            int tableIndex = nameParts.size() - (isColumn ? 2 : 1);
+            if (type != null && tableIndex >= 0) {
+                consumer.accept(new DdlEvent(COMMENT_VERB, type, nameParts.get(tableIndex)));
+            }
+        }
+        skipStatement();
+    }
+
+    private List<String> readName() {
+        List<String> parts = new ArrayList<>();
+        while (tokenType == TokenType.WORD || tokenType == TokenType.QUOTED_WORD) {
+            parts.add(token);
+            int mark = pos;
+            if (next() != TokenType.SYMBOL || !".".equals(token)) {
+                rewind(mark);
+                break;
+            }
+            next();
+        }
+        return parts;
+    }
+
+    private void skipStatement() {
+        while (!isStatementEnd() && tokenType != TokenType.END_OF_BLOCK && tokenType != TokenType.EOF) {
+            next();
+        }
+    }
+
+    private void skipBlock(Consumer<DdlEvent> consumer) {
+        while (tokenType != TokenType.END_OF_BLOCK && tokenType != TokenType.EOF) {
+            if (tokenType == TokenType.STRING) {
+                readDynamicSql(consumer);
+            }
+            next();
+        }
+    }
+
+    private void skipLineCommand(boolean isCall, Consumer<DdlEvent> consumer) {
+        int lineEnd = pos;
+        do {
+            lineEnd = text.indexOf('\n', lineEnd);
+            lineEnd = lineEnd < 0 ? text.length() : lineEnd + 1;
+        } while (lineEnd < text.length() && text.substring(pos, lineEnd).trim().endsWith("-"));
+
+        if (isCall) {
+            SqlLexer callLexer = new SqlLexer(text.substring(pos, lineEnd));
+            callLexer.next();
+            callLexer.skipBlock(consumer);
+        }
+        pos = lineEnd;
+    }
+
+    private void readDynamicSql(Consumer<DdlEvent> consumer) {
+        String sql = token.trim();
+        int verbEnd = 0;
+        while (verbEnd < sql.length() && Character.isLetter(sql.charAt(verbEnd))) {
+            verbEnd++;
+        }
+        if (DDL_VERBS.contains(sql.substring(0, verbEnd).toLowerCase())) {
+            new SqlLexer(sql).readDdlEvents(consumer);
+        }
+    }
+
+    private void rewind(int mark) {
+        pos = mark;
+        tokenType = null;
+        token = null;
+    }
+
+    private boolean isStatementEnd() {
+        return tokenType == TokenType.SYMBOL && ";".equals(token);
+    }
+
+    private TokenType next() {
+        skipWhitespaceAndComments();
+        if (pos >= text.length()) {
+            token = null;
+            return tokenType = TokenType.EOF;
+        }
+
+        char c = text.charAt(pos);
+        if (c == '/' && isAloneOnLine(pos)) {
+            pos++;
+            token = "/";
+            return tokenType = TokenType.END_OF_BLOCK;
+        }
+        if (c == '\'') {
+            return readString(pos + 1);
+        }
+        if (isQuotedStringStart(c)) {
+            return readQuotedString();
+        }
+        if (c == '"') {
+            int end = text.indexOf('"', pos + 1);
+            end = end < 0 ? text.length() : end;
+            token = text.substring(pos + 1, end);
+            pos = Math.min(end + 1, text.length());
+            return tokenType = TokenType.QUOTED_WORD;
+        }
+        if (Character.isLetterOrDigit(c)) {
+            int start = pos;
+            while (pos < text.length() && isWordChar(text.charAt(pos))) {
+                pos++;
+            }
+            token = text.substring(start, pos).toLowerCase();
+            return tokenType = TokenType.WORD;
+        }
+
+        pos++;
+        token = String.valueOf(c);
+        return tokenType = TokenType.SYMBOL;
+    }
+
+    private void skipWhitespaceAndComments() {
+        while (pos < text.length()) {
+            char c = text.charAt(pos);
+            if (Character.isWhitespace(c)) {
+                pos++;
+            } else if (text.startsWith("--", pos)) {
+                int end = text.indexOf('\n', pos);
+                pos = end < 0 ? text.length() : end + 1;
+            } else if (text.startsWith("/*", pos)) {
+                int end = text.indexOf("*/", pos + 2);
+                pos = end < 0 ? text.length() : end + 2;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private TokenType readString(int start) {
+        StringBuilder value = new StringBuilder();
+        int i = start;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c == '\'' && i + 1 < text.length() && text.charAt(i + 1) == '\'') {
+                value.append('\'');
+                i += 2;
+            } else if (c == '\'') {
+                i++;
+                break;
+            } else {
+                value.append(c);
+                i++;
+            }
+        }
+        pos = i;
+        token = value.toString();
+        return tokenType = TokenType.STRING;
+    }
+
+    private boolean isQuotedStringStart(char c) {
+        int quotePos = pos;
+        if (c == 'n' || c == 'N') {
+            quotePos++;
+            if (quotePos < text.length() && text.charAt(quotePos) == '\'') {
+                return true;
+            }
+            if (quotePos >= text.length()) {
+                return false;
+            }
+            c = text.charAt(quotePos);
+        }
+        return (c == 'q' || c == 'Q') && quotePos + 2 < text.length() && text.charAt(quotePos + 1) == '\''
+                && (pos == 0 || !isWordChar(text.charAt(pos - 1)));
+    }
+
+    private TokenType readQuotedString() {
+        int quotePos = text.indexOf('\'', pos);
+        char prefix = Character.toLowerCase(text.charAt(quotePos - 1));
+        if (prefix != 'q') {
+            return readString(quotePos + 1);
+        }
+
+        char closingDelimiter = getClosingDelimiter(text.charAt(quotePos + 1));
+        int start = quotePos + 2;
+        int end = text.indexOf(closingDelimiter + "'", start);
+        end = end < 0 ? text.length() : end;
+        token = text.substring(start, end);
+        pos = Math.min(end + 2, text.length());
+        return tokenType = TokenType.STRING;
+    }
+
+    private boolean isAloneOnLine(int index) {
+        for (int i = index - 1; i >= 0 && text.charAt(i) != '\n'; i--) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                return false;
+            }
+        }
+        for (int i = index + 1; i < text.length() && text.charAt(i) != '\n'; i++) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '#';
+    }
+
+    private static char getClosingDelimiter(char openingDelimiter) {
+        switch (openingDelimiter) {
+            case '[':
+                return ']';
+            case '{':
+                return '}';
+            case '(':
+                return ')';
+            case '<':
+                return '>';
+            default:
+                return openingDelimiter;
+        }
+    }
+
+    private static Map<String, Map<String, DbObjectType>> createTypesByVerb() {
+        Map<String, Map<String, DbObjectType>> typesByVerb = new HashMap<>();
+        for (DbObjectType type : DbObjectType.values()) {
+            for (String keyword : type.getChangeKeywords()) {
+                List<String> words = new ArrayList<>(Arrays.asList(keyword.split(" ")));
+                if (words.size() == 1) {
+                    // a bare type keyword matches the type after any verb
+                    DDL_VERBS.forEach(verb -> typesByVerb.computeIfAbsent(verb, k -> new HashMap<>()).put(words.get(0), type));
+                    continue;
+                }
+
+                String verb = words.remove(0);
+                if (COMMENT_VERB.equals(verb)) {
+                    words.remove("on");
+                } else if ("replace".equals(verb)) {
+                    verb = CREATE_VERB;
+                }
+                words.removeAll(DDL_MODIFIERS);
+                typesByVerb.computeIfAbsent(verb, k -> new HashMap<>()).put(String.join(" ", words), type);
+            }
+        }
+        return typesByVerb;
+    }
+
+    private enum TokenType {
+        WORD,
+        QUOTED_WORD,
+        STRING,
+        SYMBOL,
+        END_OF_BLOCK,
+        EOF
+    }
+}
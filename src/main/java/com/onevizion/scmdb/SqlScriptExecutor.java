@@ -1,5 +1,7 @@
 package com.onevizion.scmdb;
 
+import com.onevizion.scmdb.vo.DbCnnCredentials;
+import com.onevizion.scmdb.vo.ExecutionEngine;
 import com.onevizion.scmdb.vo.ScriptType;
 import com.onevizion.scmdb.vo.SqlScript;
 import org.apache.commons.exec.CommandLine;
@@ -15,28 +17,19 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import static com.onevizion.scmdb.ColorLogger.Color.YELLOW;
 
 public class SqlScriptExecutor {
     private static final String SQL_CLIENT_COMMAND = "sql";
 
-    private static final String INVALID_OBJECT_PREFIX = "Invalid objects in";
-    private static final String INVALID_OBJECT_REGEX = "^(\\w+\\s){0,2}\\w+\\s+\\S+\\s+is invalid.\\s*";
-
-    private boolean isSqlClBannerStarted = false;
-    private static final String SQLCL_BANNER_START_REGEX = "^SQLcl: Release [\\d|.]+ Production on .+";
-    private static final String SQLCL_BANNER_ORA_VERSION_REGEX = "Oracle Database [\\w|\\d]+ \\w+ \\w+ Release [\\d|.]+ - \\d+bit Production";
-    private static final String SQLCL_BANNER_END_REGEX = "^" + SQLCL_BANNER_ORA_VERSION_REGEX;
-    private static final String SQLCL_DISCON_FROM_DB_REGEX = "^Disconnected from " + SQLCL_BANNER_ORA_VERSION_REGEX;
-
-    private boolean isErrorMsgStarted = false;
-    private static final String ERROR_STARTING_AT_LINE = "Error starting at line :";
-
     private static final String CANT_RUN_PROGRAM = "Cannot run program \"sql\"";
     private static final String CREATE_SQL = "create.sql";
+    private static final String COMPILE_INVALIDS_SQL = "compile_invalids.sql";
 
-    private Executor executor;
+    private File compileInvalidsScript;
 
     @Resource
     private AppArguments appArguments;
@@ -44,48 +37,83 @@ public class SqlScriptExecutor {
     @Resource
     private ColorLogger logger;
 
-    public SqlScriptExecutor() {
-        executor = new DefaultExecutor();
-        executor.setStreamHandler(new PumpStreamHandler(new LogOutputStream() {
-            @Override
-            protected void processLine(String line, int logLevel) {
-                if (isSqlClBannerPrinted(line)) {
-                    return;
-                } else if (line.startsWith(INVALID_OBJECT_PREFIX)) {
-                    logger.warn(line, YELLOW);
-                } else if (line.matches(INVALID_OBJECT_REGEX)) {
-                    logger.warn(line, YELLOW);
-                } else if (line.startsWith(ERROR_STARTING_AT_LINE)) {
-                    isErrorMsgStarted = true;
-                    logger.error(line);
-                } else if (isErrorMsgStarted) {
-                    logger.error(line);
-                } else {
-                    logger.info(line);
-                }
-            }
-        }, new LogOutputStream() {
-            @Override
-            protected void processLine(String line, int logLevel) {
-                logger.error(line);
-            }
-        }));
-    }
+    @Resource
+    private SqlclSessionManager sessionManager;
+
+    @Resource
+    private JdbcScriptExecutor jdbcScriptExecutor;
+
+    @Resource
+    private InvalidObjectsCompiler invalidObjectsCompiler;
 
     public int execute(SqlScript script) {
-        CommandLine commandLine = new CommandLine(SQL_CLIENT_COMMAND);
-        commandLine.addArgument("-L");
+        DbCnnCredentials credentials;
         if (script.isUserSchemaScript()) {
-            commandLine.addArgument(appArguments.getUserCredentials().getConnectionString());
+            credentials = appArguments.getUserCredentials();
         } else {
-            commandLine.addArgument(appArguments.getOwnerCredentials().getConnectionString());
+            credentials = appArguments.getOwnerCredentials();
+        }
+
+        ScriptOutputHandler outputHandler = new ScriptOutputHandler(appArguments.getOutputCaptureCap());
+        script.setExecStart(new Date());
+        long startNanos = System.nanoTime();
+        int exitCode = execute(script, credentials, outputHandler);
+        long endNanos = System.nanoTime();
+        if (outputHandler.capture != null && !outputHandler.capture.isEmpty()) {
+            script.setOutput(OutputCapture.compress(outputHandler.capture.getOutput()));
+        }
+        script.setErrorCount(outputHandler.classifier.getErrorCount());
+        script.setWarningCount(outputHandler.classifier.getWarningCount());
+        script.setInvalidObjectCount(outputHandler.classifier.getInvalidObjectCount());
+        Long recompileNanos = outputHandler.compileStartNanos == null ? null : endNanos - outputHandler.compileStartNanos;
+        if (exitCode == 0 && !script.isUserSchemaScript()
+                && (appArguments.isCompileInvalidsDeferred() || invalidObjectsCompiler.isScheduled())) {
+            if (invalidObjectsCompiler.scriptExecuted()) {
+                recompileNanos = System.nanoTime() - endNanos;
+            }
+            endNanos = System.nanoTime();
+        }
+
+        script.setExitCode(exitCode);
+        script.setExecDurationMs(TimeUnit.NANOSECONDS.toMillis(endNanos - startNanos));
+        if (outputHandler.scriptStartNanos != null) {
+            script.setExecOverheadMs(TimeUnit.NANOSECONDS.toMillis(outputHandler.scriptStartNanos - startNanos));
         }
+        if (recompileNanos != null) {
+            script.setRecompileMs(TimeUnit.NANOSECONDS.toMillis(recompileNanos));
+        }
+        return exitCode;
+    }
+
+    private int execute(SqlScript script, DbCnnCredentials credentials, ScriptOutputHandler outputHandler) {
+        boolean isCompileInvalids = !script.isUserSchemaScript() && !appArguments.isCompileInvalidsDeferred()
+                && !invalidObjectsCompiler.isScheduled();
+        if (appArguments.getExecutionEngine() == ExecutionEngine.JDBC) {
+            return jdbcScriptExecutor.execute(credentials, script.getFile(), isCompileInvalids, outputHandler);
+        }
+
+        File compileInvalids = isCompileInvalids ? getCompileInvalidsScript() : null;
+        if (appArguments.getExecutionEngine() == ExecutionEngine.SQLCL_SESSION) {
+            try {
+                return sessionManager.execute(credentials, script.getFile(), compileInvalids, outputHandler);
+            } catch (IOException e) {
+                return getExitCode(e);
+            }
+        }
+
+        CommandLine commandLine = new CommandLine(SQL_CLIENT_COMMAND);
+        commandLine.addArgument("-L");
+        commandLine.addArgument(credentials.getConnectionString());
 
         File workingDir = script.getFile().getParentFile();
-        File wrapperScriptFile = getTmpWrapperScript(script.isUserSchemaScript(), workingDir);
+        File wrapperScriptFile = getTmpWrapperScript(isCompileInvalids);
         commandLine.addArgument("@" + wrapperScriptFile.getAbsolutePath());
         commandLine.addArgument(script.getFile().getAbsolutePath());
+        if (compileInvalids != null) {
+            commandLine.addArgument(compileInvalids.getAbsolutePath());
+        }
 
+        Executor executor = createExecutor(outputHandler);
         executor.setWorkingDirectory(workingDir);
         try {
             return executor.execute(commandLine);
@@ -93,34 +121,67 @@ public class SqlScriptExecutor {
         } catch (ExecuteException e) {
             return e.getExitValue();
         } catch (IOException e) {
-            if (e.getMessage().startsWith(CANT_RUN_PROGRAM)) {
-                return 2;
-            } else {
-                logger.error("Error during command execution.", e);
-                return 1;
-            }
+            return getExitCode(e);
         } finally {
             wrapperScriptFile.delete();
         }
     }
 
-    private File getTmpWrapperScript(boolean isUserSchemaScript, File workingDir) {
+    private int getExitCode(IOException e) {
+        if (e.getMessage().startsWith(CANT_RUN_PROGRAM)) {
+            return 2;
+        } else {
+            logger.error("Error during command execution.", e);
+            return 1;
+        }
+    }
+
+    private Executor createExecutor(ScriptOutputHandler outputHandler) {
+        Executor executor = new DefaultExecutor();
+        executor.setStreamHandler(new PumpStreamHandler(new LogOutputStream() {
+            @Override
+            protected void processLine(String line, int logLevel) {
+                outputHandler.accept(line);
+            }
+        }, new LogOutputStream() {
+            @Override
+            protected void processLine(String line, int logLevel) {
+                outputHandler.acceptError(line);
+            }
+        }));
+        return executor;
+    }
+
+    private synchronized File getCompileInvalidsScript() {
+        if (compileInvalidsScript == null) {
+            URL resource = getClass().getClassLoader().getResource(COMPILE_INVALIDS_SQL);
+            try {
+                File tmpFile = File.createTempFile("scmdb_compile_invalids", ".sql");
+                tmpFile.deleteOnExit();
+                FileUtils.copyURLToFile(resource, tmpFile);
+                compileInvalidsScript = tmpFile;
+            } catch (IOException e) {
+                throw new RuntimeException("Can't copy " + COMPILE_INVALIDS_SQL + " file.", e);
+            }
+        }
+        return compileInvalidsScript;
+    }
+
+    private File getTmpWrapperScript(boolean isCompileInvalids) {
         ClassLoader classLoader = getClass().getClassLoader();
         URL wrapperScript;
-        if (isUserSchemaScript) {
-            wrapperScript = classLoader.getResource("sqlplus_exit_code_wrapper.sql");
-        } else {
+        if (isCompileInvalids) {
             wrapperScript = classLoader.getResource("compile_invalids_wrapper.sql");
+        } else {
+            wrapperScript = classLoader.getResource("sqlplus_exit_code_wrapper.sql");
         }
-        File tmpFile = new File(workingDir.getAbsolutePath() + File.pathSeparator + "tmp.sql");
-
         try {
+            File tmpFile = File.createTempFile("scmdb_wrapper", ".sql");
             FileUtils.copyURLToFile(wrapperScript, tmpFile);
+            return tmpFile;
         } catch (IOException e) {
             throw new RuntimeException("Can't copy tmp wrapper file.", e);
         }
-
-        return tmpFile;
     }
 
     public boolean createDbScriptTable() {
@@ -149,23 +210,58 @@ public class SqlScriptExecutor {
         CommandLine commandLine = new CommandLine(SQL_CLIENT_COMMAND);
         commandLine.addArgument("-v");
         try {
-            executor.execute(commandLine);
+            createExecutor(new ScriptOutputHandler(0)).execute(commandLine);
         } catch (IOException e) {
             logger.error("Error during command execution.", e);
             throw e;
         }
     }
 
-    private boolean isSqlClBannerPrinted(String line) {
-        if (line.matches(SQLCL_BANNER_START_REGEX)) {
-            isSqlClBannerStarted = true;
-        } else if (line.matches(SQLCL_BANNER_END_REGEX)) {
-            isSqlClBannerStarted = false;
-            return true;
-        } else if (isSqlClBannerStarted || line.matches(SQLCL_DISCON_FROM_DB_REGEX)) {
-            return true;
+    private class ScriptOutputHandler implements Consumer<String> {
+        private final OutputCapture capture;
+        private final OutputClassifier classifier = new OutputClassifier();
+        private volatile Long scriptStartNanos;
+        private volatile Long compileStartNanos;
+
+        private ScriptOutputHandler(int captureCap) {
+            capture = captureCap > 0 ? new OutputCapture(captureCap) : null;
+        }
+
+        @Override
+        public void accept(String line) {
+            OutputClassifier.LineType lineType = classifier.classify(line);
+            if (lineType == OutputClassifier.LineType.SCRIPT_STARTED) {
+                scriptStartNanos = System.nanoTime();
+                return;
+            } else if (lineType == OutputClassifier.LineType.COMPILE_INVALIDS_STARTED) {
+                compileStartNanos = System.nanoTime();
+                return;
+            } else if (lineType == OutputClassifier.LineType.BANNER) {
+                return;
+            }
+
+            if (capture != null) {
+                capture.append(line);
+            }
+            switch (lineType) {
+                case WARNING:
+                case INVALID_OBJECTS_HEADER:
+                case INVALID_OBJECT:
+                    logger.warn(line, YELLOW);
+                    break;
+                case ERROR:
+                    logger.error(line);
+                    break;
+                default:
+                    logger.info(line);
+            }
         }
 
-        return isSqlClBannerStarted;
+        private void acceptError(String line) {
+            if (capture != null) {
+                capture.append(line);
+            }
+            logger.error(line);
+        }
     }
 }
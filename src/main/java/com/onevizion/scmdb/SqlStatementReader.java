@@ -0,0 +1,237 @@
+package com.onevizion.scmdb;
+
+import com.onevizion.scmdb.vo.ScriptStatement;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static com.onevizion.scmdb.vo.ScriptStatement.Type.COMMAND;
+import static com.onevizion.scmdb.vo.ScriptStatement.Type.PLSQL;
+import static com.onevizion.scmdb.vo.ScriptStatement.Type.SQL;
+
+public class SqlStatementReader {
+    private static final Set<String> SQLPLUS_COMMANDS = new HashSet<>(Arrays.asList(
+            "acc", "accept", "bre", "break", "btitle", "cd", "cl", "clear", "col", "column", "comp", "compute",
+            "conn", "connect", "def", "define", "desc", "describe", "disc", "disconnect", "exec", "execute", "exit",
+            "ho", "host", "pau", "pause", "pri", "print", "pro", "prompt", "quit", "rem", "remark", "repheader",
+            "set", "sho", "show", "spo", "spool", "sta", "start", "timing", "ttitle", "undef", "undefine", "var",
+            "variable", "whenever"));
+    private static final Set<String> SQL_SET_STATEMENTS = new HashSet<>(Arrays.asList(
+            "constraint", "constraints", "role", "transaction"));
+    private static final Set<String> PLSQL_CREATE_OBJECTS = new HashSet<>(Arrays.asList(
+            "and", "function", "java", "library", "package", "procedure", "trigger", "type"));
+    private static final Set<String> EDITIONING_OPTIONS = new HashSet<>(Arrays.asList(
+            "editionable", "editioning", "noneditionable"));
+
+    private final BufferedReader reader;
+    private int lineNumber;
+
+    private boolean isInString;
+    private char stringEnd;
+    private boolean isInBlockComment;
+
+    public SqlStatementReader(Reader reader) {
+        this.reader = new BufferedReader(reader);
+    }
+
+    public ScriptStatement next() throws IOException {
+        StringBuilder buffer = null;
+        ScriptStatement.Type type = null;
+        int startLine = 0;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+
+            if (buffer == null) {
+                line = skipLeadingComments(line);
+            }
+            String trimmedLine = line.trim();
+
+            if (buffer == null) {
+                if (trimmedLine.isEmpty() || trimmedLine.startsWith("--") || trimmedLine.equals("/")) {
+                    continue;
+                }
+                if (isCommand(trimmedLine)) {
+                    return new ScriptStatement(COMMAND, readCommand(trimmedLine), lineNumber);
+                }
+
+                buffer = new StringBuilder();
+                startLine = lineNumber;
+                isInString = false;
+            }
+
+            if (type == null) {
+                type = classify(buffer + line);
+            }
+
+            if (trimmedLine.equals("/") && !isInString && !isInBlockComment) {
+                return new ScriptStatement(type == null ? SQL : type, trimTrailingNewLine(buffer), startLine);
+            }
+
+            if (type != PLSQL) {
+                int terminatorIndex = findTerminator(line);
+                if (terminatorIndex >= 0) {
+                    buffer.append(line, 0, terminatorIndex);
+                    return new ScriptStatement(SQL, buffer.toString(), startLine);
+                }
+            }
+            buffer.append(line).append('\n');
+        }
+
+        return null;
+    }
+
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Returns the rest of the line after the block comments it starts with. A comment which isn't closed on the line
+     * is tracked like in {@link #findTerminator}, so the following lines are skipped up to its end only.
+     */
+    private String skipLeadingComments(String line) {
+        int start = 0;
+        while (true) {
+            if (isInBlockComment) {
+                int commentEnd = line.indexOf("*/", start);
+                if (commentEnd < 0) {
+                    return "";
+                }
+                isInBlockComment = false;
+                start = commentEnd + 2;
+            }
+            while (start < line.length() && Character.isWhitespace(line.charAt(start))) {
+                start++;
+            }
+            if (!line.startsWith("/*", start)) {
+                return line.substring(start);
+            }
+            isInBlockComment = true;
+            start += 2;
+        }
+    }
+
+    private boolean isCommand(String trimmedLine) {
+        char firstChar = trimmedLine.charAt(0);
+        if (firstChar == '@' || firstChar == '!') {
+            return true;
+        }
+
+        String[] words = trimmedLine.toLowerCase().split("\\s+", 3);
+        String firstWord = words[0];
+        if (firstWord.endsWith(";")) {
+            firstWord = firstWord.substring(0, firstWord.length() - 1);
+        }
+        if ("set".equals(firstWord) && words.length > 1 && SQL_SET_STATEMENTS.contains(words[1])) {
+            return false;
+        }
+        return SQLPLUS_COMMANDS.contains(firstWord);
+    }
+
+    private String readCommand(String firstLine) throws IOException {
+        StringBuilder command = new StringBuilder(firstLine);
+        while (command.length() > 0 && command.charAt(command.length() - 1) == '-') {
+            command.setLength(command.length() - 1);
+            String line = reader.readLine();
+            if (line == null) {
+                break;
+            }
+            lineNumber++;
+            command.append(' ').append(line.trim());
+        }
+        return command.toString().trim();
+    }
+
+    static ScriptStatement.Type classify(String text) {
+        String[] words = text.trim().toLowerCase().split("[\\s(]+", 6);
+        if ("declare".equals(words[0]) || "begin".equals(words[0]) || words[0].startsWith("<<")) {
+            return PLSQL;
+        }
+        if (!"create".equals(words[0])) {
+            return SQL;
+        }
+
+        int i = 1;
+        if (i < words.length && "or".equals(words[i])) {
+            i += 2;
+        }
+        if (i < words.length && EDITIONING_OPTIONS.contains(words[i])) {
+            i++;
+        }
+        if (i >= words.length || words[i].isEmpty()) {
+            return null;
+        }
+        return PLSQL_CREATE_OBJECTS.contains(words[i]) ? PLSQL : SQL;
+    }
+
+    private int findTerminator(String line) {
+        int terminatorIndex = -1;
+        int length = line.length();
+        for (int i = 0; i < length; i++) {
+            char c = line.charAt(i);
+            if (isInBlockComment) {
+                if (c == '*' && i + 1 < length && line.charAt(i + 1) == '/') {
+                    isInBlockComment = false;
+                    i++;
+                }
+            } else if (isInString) {
+                if (stringEnd == '\'') {
+                    if (c == '\'' && i + 1 < length && line.charAt(i + 1) == '\'') {
+                        i++;
+                    } else if (c == '\'') {
+                        isInString = false;
+                    }
+                } else if (c == stringEnd && i + 1 < length && line.charAt(i + 1) == '\'') {
+                    isInString = false;
+                    i++;
+                }
+            } else if (c == '-' && i + 1 < length && line.charAt(i + 1) == '-') {
+                break;
+            } else if (c == '/' && i + 1 < length && line.charAt(i + 1) == '*') {
+                isInBlockComment = true;
+                i++;
+            } else if ((c == 'q' || c == 'Q') && i + 2 < length && line.charAt(i + 1) == '\''
+                    && (i == 0 || !Character.isLetterOrDigit(line.charAt(i - 1)))) {
+                isInString = true;
+                stringEnd = closingQuoteDelimiter(line.charAt(i + 2));
+                i += 2;
+            } else if (c == '\'') {
+                isInString = true;
+                stringEnd = '\'';
+            } else if (c == ';') {
+                terminatorIndex = i;
+            } else if (!Character.isWhitespace(c)) {
+                terminatorIndex = -1;
+            }
+        }
+        return isInString || isInBlockComment ? -1 : terminatorIndex;
+    }
+
+    private static char closingQuoteDelimiter(char openingDelimiter) {
+        switch (openingDelimiter) {
+            case '[':
+                return ']';
+            case '{':
+                return '}';
+            case '(':
+                return ')';
+            case '<':
+                return '>';
+            default:
+                return openingDelimiter;
+        }
+    }
+
+    private static String trimTrailingNewLine(StringBuilder buffer) {
+        int length = buffer.length();
+        while (length > 0 && (buffer.charAt(length - 1) == '\n' || buffer.charAt(length - 1) == '\r')) {
+            length--;
+        }
+        return buffer.substring(0, length);
+    }
+}
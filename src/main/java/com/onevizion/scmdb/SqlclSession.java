@@ -0,0 +1,121 @@
+package com.onevizion.scmdb;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+class SqlclSession {
+    private static final String SQL_CLIENT_COMMAND = "sql";
+    private static final String END_MARKER_PREFIX = "SCMDB_END_OF_SCRIPT_";
+    private static final String SETTINGS_FILE_PREFIX = "scmdb_sqlcl_settings";
+    private static final long EXIT_TIMEOUT_SECONDS = 10L;
+
+    private final Process process;
+    private final Writer stdin;
+    private final BufferedReader stdout;
+    private final File settingsFile;
+
+    /**
+     * Starts SQLcl and stores its settings before anything changed them, {@link #getSettingsFile()} restores them.
+     */
+    SqlclSession(String connectionString) throws IOException {
+        process = new ProcessBuilder(SQL_CLIENT_COMMAND, "-S", "-L", connectionString)
+                .redirectErrorStream(true)
+                .start();
+        stdin = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), Charset.defaultCharset()));
+        stdout = new BufferedReader(new InputStreamReader(process.getInputStream(), Charset.defaultCharset()));
+        settingsFile = File.createTempFile(SETTINGS_FILE_PREFIX, ".sql");
+        try {
+            StringBuilder output = new StringBuilder();
+            int exitCode = run(Collections.singletonList("store set \"" + settingsFile.getAbsolutePath() + "\" replace"),
+                    line -> output.append('\n').append(line));
+            if (exitCode != 0) {
+                throw new IOException("SQLcl exited with code " + exitCode + " on start:" + output);
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Runs the commands and returns the exit code of SQLcl when it exits. Throws {@link SessionLostException} only
+     * when the first command can't be written, nothing was run then and the commands can be run by another session.
+     */
+    int run(List<String> commands, Consumer<String> lineHandler) throws IOException {
+        String endMarker = END_MARKER_PREFIX + UUID.randomUUID().toString().replace("-", "");
+        try {
+            stdin.write(commands.get(0));
+            stdin.write('\n');
+            stdin.flush();
+        } catch (IOException e) {
+            throw new SessionLostException(e);
+        }
+        for (String command : commands.subList(1, commands.size())) {
+            stdin.write(command);
+            stdin.write('\n');
+        }
+        stdin.write("prompt " + endMarker + "\n");
+        stdin.flush();
+
+        String line;
+        while ((line = stdout.readLine()) != null) {
+            if (line.equals(endMarker)) {
+                return 0;
+            }
+            lineHandler.accept(line);
+        }
+        return waitForExitValue();
+    }
+
+    File getSettingsFile() {
+        return settingsFile;
+    }
+
+    boolean isAlive() {
+        return process.isAlive();
+    }
+
+    void close() {
+        try {
+            if (process.isAlive()) {
+                stdin.write("exit\n");
+                stdin.flush();
+                process.waitFor(EXIT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+        } catch (IOException e) {
+            // session is already gone
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            process.destroy();
+            settingsFile.delete();
+        }
+    }
+
+    static class SessionLostException extends IOException {
+        private SessionLostException(IOException cause) {
+            super(cause.getMessage(), cause);
+        }
+    }
+
+    private int waitForExitValue() {
+        try {
+            return process.waitFor();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            process.destroy();
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.onevizion.scmdb;
+
+import com.onevizion.scmdb.vo.DbCnnCredentials;
+import org.apache.commons.io.FileUtils;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+@Component
+public class SqlclSessionManager {
+    private static final int SESSION_LOST_EXIT_CODE = 1;
+    private static final String VARIABLE_NAME = "([A-Za-z0-9_$#]+)";
+    private static final List<Pattern> VARIABLE_PATTERNS = Arrays.asList(
+            Pattern.compile("^\\s*def(?:ine)?\\s+" + VARIABLE_NAME, Pattern.CASE_INSENSITIVE | Pattern.MULTILINE),
+            Pattern.compile("^\\s*acc(?:ept)?\\s+" + VARIABLE_NAME, Pattern.CASE_INSENSITIVE | Pattern.MULTILINE),
+            Pattern.compile("\\bnew_?v(?:alue|al)?\\s+" + VARIABLE_NAME, Pattern.CASE_INSENSITIVE),
+            Pattern.compile("&&" + VARIABLE_NAME));
+
+    private final Map<String, ConcurrentLinkedDeque<SqlclSession>> idleSessions = new ConcurrentHashMap<>();
+
+    @Resource
+    private ColorLogger logger;
+
+    public int execute(DbCnnCredentials credentials, File scriptFile, File compileInvalidsScript,
+                       Consumer<String> lineHandler) throws IOException {
+        Set<String> variables = findVariables(scriptFile);
+        String connectionString = credentials.getConnectionString();
+
+        SqlclSession session = idleSessions.computeIfAbsent(connectionString, k -> new ConcurrentLinkedDeque<>())
+                                           .pollFirst();
+        if (session != null && !session.isAlive()) {
+            session.close();
+            session = null;
+        }
+        if (session == null) {
+            session = new SqlclSession(connectionString);
+        }
+
+        int exitCode;
+        try {
+            exitCode = runOrFail(session, createCommands(session, scriptFile, compileInvalidsScript, credentials,
+                    variables), lineHandler);
+        } catch (SqlclSession.SessionLostException e) {
+            // nothing of the script was run, so it's safe to run it by a new session
+            logger.info("SQLcl session for [{}] was lost, restarting it", credentials.getSchemaName());
+            session.close();
+            session = new SqlclSession(connectionString);
+            try {
+                exitCode = runOrFail(session, createCommands(session, scriptFile, compileInvalidsScript, credentials,
+                        variables), lineHandler);
+            } catch (SqlclSession.SessionLostException restartException) {
+                session.close();
+                throw restartException;
+            }
+        }
+
+        if (session.isAlive()) {
+            idleSessions.get(connectionString).offerFirst(session);
+        } else {
+            session.close();
+        }
+        return exitCode;
+    }
+
+    private int runOrFail(SqlclSession session, List<String> commands,
+                          Consumer<String> lineHandler) throws SqlclSession.SessionLostException {
+        try {
+            return session.run(commands, lineHandler);
+        } catch (SqlclSession.SessionLostException e) {
+            throw e;
+        } catch (IOException e) {
+            // a part of the script may be applied already, it's reported as failed instead of being run again
+            lineHandler.accept("SQLcl session was lost while executing the script: " + e.getMessage());
+            session.close();
+            return SESSION_LOST_EXIT_CODE;
+        }
+    }
+
+    /**
+     * Commands which run the script in the state of a new SQLcl process: the script gets a new database session, so
+     * NLS settings, package state and dbms_output of the previous script don't reach it, and the settings, columns and
+     * substitution variables of the session are reset before it. Its transaction is committed after it like SQLcl
+     * does on exit. The settings are those of the wrapper scripts of the one-process-per-script engine.
+     */
+    private List<String> createCommands(SqlclSession session, File scriptFile, File compileInvalidsScript,
+                                        DbCnnCredentials credentials, Set<String> variables) {
+        List<String> commands = new ArrayList<>();
+        commands.add("whenever sqlerror exit sql.sqlcode");
+        commands.add("connect " + credentials.getConnectionString());
+        commands.add("@\"" + session.getSettingsFile().getAbsolutePath() + "\"");
+        commands.add("set pagesize 0");
+        commands.add("set verify off");
+        commands.add("clear columns");
+        if (!variables.isEmpty()) {
+            commands.add("undefine " + String.join(" ", variables));
+        }
+        commands.add("cd " + scriptFile.getAbsoluteFile().getParent());
+        commands.add("prompt " + OutputClassifier.SCRIPT_START_MARKER);
+        commands.add("@\"" + scriptFile.getAbsolutePath() + "\"");
+        commands.add("commit");
+        commands.add("alter session set current_schema=" + credentials.getSchemaName());
+        if (compileInvalidsScript != null) {
+            commands.add("prompt " + OutputClassifier.COMPILE_INVALIDS_START_MARKER);
+            commands.add("@\"" + compileInvalidsScript.getAbsolutePath() + "\"");
+        }
+        return commands;
+    }
+
+    // variables defined by nested scripts aren't found, nested scripts are read only by SQLcl
+    private Set<String> findVariables(File scriptFile) throws IOException {
+        String text = FileUtils.readFileToString(scriptFile, StandardCharsets.UTF_8);
+        Set<String> variables = new TreeSet<>();
+        for (Pattern pattern : VARIABLE_PATTERNS) {
+            Matcher matcher = pattern.matcher(text);
+            while (matcher.find()) {
+                variables.add(matcher.group(1).toLowerCase());
+            }
+        }
+        return variables;
+    }
+
+    @PreDestroy
+    public void closeSessions() {
+        for (ConcurrentLinkedDeque<SqlclSession> sessions : idleSessions.values()) {
+            SqlclSession session;
+            while ((session = sessions.pollFirst()) != null) {
+                session.close();
+            }
+        }
+    }
+}
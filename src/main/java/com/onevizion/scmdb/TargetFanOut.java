@@ -0,0 +1,227 @@
+package com.onevizion.scmdb;
+
+import com.onevizion.scmdb.facade.DbScriptFacade;
+import com.onevizion.scmdb.vo.DbCnnCredentials;
+import com.onevizion.scmdb.vo.SqlScript;
+import oracle.ucp.jdbc.PoolDataSourceImpl;
+import org.slf4j.MDC;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+import javax.annotation.Resource;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.onevizion.scmdb.ColorLogger.Color.GREEN;
+import static com.onevizion.scmdb.ColorLogger.Color.RED;
+import static com.onevizion.scmdb.ColorLogger.Color.YELLOW;
+
+/**
+ * Updates every database listed in the targets file from one scan of the scripts directory. Each target is updated
+ * in an application context of its own, so targets share no connection pools, executors, journals or SQLcl sessions.
+ * At most [--parallel-targets] targets are updated at a time.
+ */
+public class TargetFanOut {
+    private static final String SUMMARY_FORMAT = "%-50s %-8s %12s %9s %7s  %s";
+    private static final String COMMENT_PREFIX = "#";
+    private static final String POOL_NAME_PREFIX = "scmdb-";
+    private static final String TARGETS_FILE_ERROR_MESSAGE = "Line %d of targets file [%s] should contain an owner" +
+            " connection string optionally followed by a user connection string";
+
+    @Resource
+    private AppArguments appArguments;
+
+    @Resource
+    private ScriptsScanner scriptsScanner;
+
+    @Resource
+    private ColorLogger logger;
+
+    @Resource
+    private RunMetrics runMetrics;
+
+    public void run(String[] args) {
+        List<Target> targets = readTargets(appArguments.getTargetsFile());
+        if (targets.isEmpty()) {
+            logger.info("No targets in [{}]", appArguments.getTargetsFile().getAbsolutePath());
+            return;
+        }
+
+        long scanStart = System.nanoTime();
+        List<SqlScript> scripts = scriptsScanner.scan(appArguments.getScriptsDirectory());
+        runMetrics.recordPhase(RunMetrics.SCAN_PHASE, scanStart);
+
+        int parallelTargets = Math.min(appArguments.getParallelTargets(), targets.size());
+        logger.info("Updating {} targets, {} at a time", targets.size(), parallelTargets);
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelTargets);
+        List<Outcome> outcomes = new ArrayList<>(targets.size());
+        try {
+            List<Future<Outcome>> futures = new ArrayList<>(targets.size());
+            for (Target target : targets) {
+                futures.add(executor.submit(() -> update(target, args, scripts)));
+            }
+            for (Future<Outcome> future : futures) {
+                outcomes.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Update of targets was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Can't update targets", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        logSummary(outcomes);
+        long notUpdatedCount = outcomes.stream()
+                                       .filter(outcome -> outcome.status != Status.UPDATED)
+                                       .count();
+        if (notUpdatedCount > 0) {
+            throw new RuntimeException(notUpdatedCount + " of " + outcomes.size() + " targets weren't updated");
+        }
+    }
+
+    private Outcome update(Target target, String[] args, List<SqlScript> scripts) {
+        // class loggers of the target's beans get the prefix from the MDC of this thread
+        MDC.put(ColorLogger.TARGET_MDC_KEY, target.name);
+        RunMetrics targetMetrics = new RunMetrics();
+        ColorLogger targetLogger = logger.forTarget(target.name);
+        long contextStart = System.nanoTime();
+        ClassPathXmlApplicationContext ctx = Scmdb.createContext(targetMetrics, targetLogger);
+        targetMetrics.recordPhase(RunMetrics.CONTEXT_PHASE, contextStart);
+
+        PoolDataSourceImpl dataSource = null;
+        Status status = Status.UPDATED;
+        String message = "";
+        try {
+            AppArguments targetArguments = ctx.getBean(AppArguments.class);
+            targetArguments.parse(args);
+            targetArguments.setTargetName(target.name);
+            targetArguments.setOwnerCredentials(target.ownerCredentials);
+            targetArguments.setUserCredentials(target.userCredentials);
+
+            ctx.getBean(DbScriptFacade.class).init(scripts);
+            dataSource = Scmdb.configureDataSource(ctx, targetArguments);
+            dataSource.setConnectionPoolName(POOL_NAME_PREFIX + target.name);
+
+            ctx.getBean(DbManager.class).updateDb();
+        } catch (RunStoppedException e) {
+            status = Status.STOPPED;
+            message = e.getMessage();
+        } catch (SQLException | RuntimeException e) {
+            targetLogger.error("Update failed: {}", e.getMessage());
+            status = Status.FAILED;
+            message = String.valueOf(e.getMessage());
+        } finally {
+            // the journal is flushed and the metrics are reported on close, the pool is needed until then
+            ctx.close();
+            ConnectionPools.destroy(dataSource);
+            MDC.remove(ColorLogger.TARGET_MDC_KEY);
+        }
+        return new Outcome(target.name, status, message, targetMetrics);
+    }
+
+    private List<Target> readTargets(File targetsFile) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(targetsFile.toPath(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException("Can't read targets file [" + targetsFile.getAbsolutePath() + "]", e);
+        }
+
+        Map<String, Target> targets = new LinkedHashMap<>();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith(COMMENT_PREFIX)) {
+                continue;
+            }
+            // connection strings contain passwords, errors name the line instead
+            String[] cnnStrs = line.split("\\s+");
+            if (cnnStrs.length > 2 || !DbCnnCredentials.isCorrectConnectionString(cnnStrs[0])
+                    || (cnnStrs.length == 2 && !DbCnnCredentials.isCorrectConnectionString(cnnStrs[1]))) {
+                throw new IllegalArgumentException(String.format(TARGETS_FILE_ERROR_MESSAGE, i + 1,
+                        targetsFile.getAbsolutePath()));
+            }
+
+            DbCnnCredentials ownerCredentials = DbCnnCredentials.create(cnnStrs[0]);
+            DbCnnCredentials userCredentials = DbCnnCredentials.create(cnnStrs.length == 2 ? cnnStrs[1]
+                    : DbCnnCredentials.genUserCnnStr(ownerCredentials.getConnectionString()));
+            Target target = new Target(ownerCredentials, userCredentials);
+            if (targets.put(target.name, target) != null) {
+                throw new IllegalArgumentException("Target [" + target.name + "] is listed twice in targets file ["
+                        + targetsFile.getAbsolutePath() + "]");
+            }
+        }
+        return new ArrayList<>(targets.values());
+    }
+
+    private void logSummary(List<Outcome> outcomes) {
+        logger.info("\nSummary:");
+        logger.info(String.format(SUMMARY_FORMAT, "Target", "Outcome", "Duration ms", "Executed", "Failed", ""), GREEN);
+        for (Outcome outcome : outcomes) {
+            logger.info(String.format(SUMMARY_FORMAT, outcome.targetName, outcome.status.name().toLowerCase(),
+                    outcome.durationMs, outcome.executedCount, outcome.failedCount, outcome.message),
+                    outcome.status.color);
+        }
+    }
+
+    private enum Status {
+        UPDATED(GREEN),
+        STOPPED(YELLOW),
+        FAILED(RED);
+
+        private final ColorLogger.Color color;
+
+        Status(ColorLogger.Color color) {
+            this.color = color;
+        }
+    }
+
+    private static class Target {
+        private static final String INVALID_NAME_CHARS = "[^a-z0-9._@-]";
+
+        private final String name;
+        private final DbCnnCredentials ownerCredentials;
+        private final DbCnnCredentials userCredentials;
+
+        private Target(DbCnnCredentials ownerCredentials, DbCnnCredentials userCredentials) {
+            this.ownerCredentials = ownerCredentials;
+            this.userCredentials = userCredentials;
+            // names the exec directory, metrics files and log lines of the target, so the password is left out
+            String url = ownerCredentials.getOracleUrl();
+            name = (ownerCredentials.getSchemaName() + "@" + url.substring(url.indexOf('@') + 1))
+                    .toLowerCase()
+                    .replaceAll(INVALID_NAME_CHARS, "_");
+        }
+    }
+
+    private static class Outcome {
+        private final String targetName;
+        private final Status status;
+        private final String message;
+        private final long durationMs;
+        private final long executedCount;
+        private final long failedCount;
+
+        private Outcome(String targetName, Status status, String message, RunMetrics metrics) {
+            this.targetName = targetName;
+            this.status = status;
+            this.message = message;
+            durationMs = metrics.getDurationMillis();
+            Map<String, Long> counters = metrics.getCounters();
+            executedCount = counters.getOrDefault(RunMetrics.SCRIPTS_EXECUTED, 0L);
+            failedCount = counters.getOrDefault(RunMetrics.SCRIPTS_FAILED, 0L);
+        }
+    }
+}
@@ -1,14 +1,17 @@
 package com.onevizion.scmdb.dao;
 
+import oracle.jdbc.OracleConnection;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SqlTypeValue;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.support.AbstractSqlTypeValue;
 import org.springframework.stereotype.Repository;
 
 import javax.annotation.Resource;
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.List;
-import java.util.Map;
+import java.util.Collection;
 
 @Repository
 public class AbstractDaoOra {
@@ -18,50 +21,25 @@ public class AbstractDaoOra {
     @Resource
     protected NamedParameterJdbcTemplate namedParameterJdbcTemplate;
 
-    private final static int LIMIT_IN_STATEMENT = 1000;
+    private final static String NUMBER_LIST_TYPE = "SYS.ODCINUMBERLIST";
+    private final static String VARCHAR2_LIST_TYPE = "SYS.ODCIVARCHAR2LIST";
 
-    protected <T> String appendIn(String columnName, List<T> list, Map<String, Object> outSqlParams) {
-        int countParams = list.size() / LIMIT_IN_STATEMENT;
-        int residue = list.size() % LIMIT_IN_STATEMENT;
-        String paramName = "p_" + columnName;
-        String prefix = "";
-        StringBuilder sql = new StringBuilder(" (");
-        for (int i = 0; i < countParams; i++) {
-            sql.append(prefix);
-            sql.append(" ");
-            sql.append(columnName);
-            sql.append(" in ");
-            sql.append("(:");
-            sql.append(paramName);
-            sql.append(i);
-            sql.append(") ");
-            outSqlParams.put(paramName + i, list.subList(i * LIMIT_IN_STATEMENT, i * LIMIT_IN_STATEMENT + LIMIT_IN_STATEMENT));
-            prefix = " or ";
-        }
-        if (countParams == 0) {
-            if (list.isEmpty()) {
-                list = null;
-            }
-            sql.append(" ");
-            sql.append(columnName);
-            sql.append(" in ");
-            sql.append("(:");
-            sql.append(paramName);
-            sql.append(")) ");
-            outSqlParams.put(paramName, list);
-        } else if (residue != 0) {
-            sql.append(" or ");
-            sql.append(columnName);
-            sql.append(" in ");
-            sql.append("(:");
-            sql.append(paramName);
-            sql.append(countParams);
-            sql.append(")) ");
-            outSqlParams.put(paramName + countParams, list.subList(countParams * LIMIT_IN_STATEMENT, list.size()));
-        } else {
-            sql.append(") ");
-        }
-        return sql.toString();
+    /**
+     * Binds numbers as one collection param which a statement reads with
+     * {@code in (select column_value from table(:param))}. The statement text doesn't depend on the number of values,
+     * so it is parsed once and shared.
+     */
+    protected SqlTypeValue numberList(Collection<? extends Number> values) {
+        return new OracleArrayValue(NUMBER_LIST_TYPE, values.stream()
+                                                            .map(value -> new BigDecimal(value.toString()))
+                                                            .toArray());
+    }
+
+    /**
+     * Binds strings as one collection param, see {@link #numberList}.
+     */
+    protected SqlTypeValue varchar2List(Collection<String> values) {
+        return new OracleArrayValue(VARCHAR2_LIST_TYPE, values.toArray());
     }
 
     public void checkDbConnection() throws SQLException {
@@ -71,4 +49,19 @@ public class AbstractDaoOra {
             throw e;
         }
     }
+
+    private static final class OracleArrayValue extends AbstractSqlTypeValue {
+        private final String typeName;
+        private final Object[] elements;
+
+        private OracleArrayValue(String typeName, Object[] elements) {
+            this.typeName = typeName;
+            this.elements = elements;
+        }
+
+        @Override
+        protected Object createTypeValue(Connection con, int sqlType, String typeName) throws SQLException {
+            return con.unwrap(OracleConnection.class).createOracleArray(this.typeName, elements);
+        }
+    }
 }
@@ -3,6 +3,8 @@ package com.onevizion.scmdb.dao;
 import com.onevizion.scmdb.vo.ScriptStatus;
 import com.onevizion.scmdb.vo.ScriptType;
 import com.onevizion.scmdb.vo.SqlScript;
+import org.apache.commons.io.IOUtils;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.BeanPropertySqlParameterSource;
@@ -10,10 +12,17 @@ import org.springframework.jdbc.core.namedparam.SqlParameterSourceUtils;
 import org.springframework.stereotype.Repository;
 
 import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -24,17 +33,35 @@ public class DbScriptDaoOra extends AbstractDaoOra {
 
     private static final String UPDATE = "update db_script set file_hash = :fileHash,text = :text,ts = :ts where db_script_id = :id";
     private static final String CREATE = "insert into db_script (name,file_hash,text,ts,output,type,status) values (:name,:fileHash,:text,:ts,:output,:type.id,:status.id)";
+    private static final String CREATE_IF_ABSENT = "insert into db_script (name,file_hash,text,ts,output,type,status," +
+            "exec_start,exec_duration_ms,exec_overhead_ms,recompile_ms,exit_code) " +
+            "select ?,?,?,?,?,?,?,?,?,?,?,? from dual where not exists (select 1 from db_script where name = ?)";
+    private static final String READ_SLOWEST = "select name, exec_start, exec_duration_ms, exec_overhead_ms, recompile_ms, exit_code" +
+            " from db_script where exec_duration_ms is not null" +
+            " order by exec_duration_ms desc fetch first ? rows only";
+    private static final String READ_OUTPUT = "select name, output, exit_code from db_script where name = ?";
+    private static final String READ_EXEC_TIMING_COLUMN_COUNT = "select count(*) from user_tab_columns" +
+            " where table_name = 'DB_SCRIPT' and column_name = 'EXEC_START'";
+    private static final String ADD_EXEC_TIMING_COLUMNS = "alter table db_script add (" +
+            "exec_start timestamp null, exec_duration_ms number null, exec_overhead_ms number null," +
+            " recompile_ms number null, exit_code number null)";
     private static final String DELETE = "delete from db_script where db_script_id = ?";
-    private static final String READ_ALL = "select * from db_script";
+    private static final String DELETE_BY_IDS = "delete from db_script where db_script_id in (select column_value from table(:ids))";
+    private static final String READ_ALL_METADATA = "select db_script_id, name, file_hash, type, status from db_script";
+    private static final String READ_METADATA_BY_BUCKETS = READ_ALL_METADATA +
+            " where lower(substr(rawtohex(standard_hash(utl_i18n.string_to_raw(name, 'AL32UTF8'), 'SHA1')), 1, 2))" +
+            " in (select column_value from table(:buckets))";
+    private static final String READ_STATE_HASH = "select count(*) || ':' || nvl(sum(ora_hash(name || '/' || file_hash)), 0) from db_script";
+    private static final String READ_TEXT = "select text from db_script where db_script_id = ?";
     private static final String READ_COUNT = "select count(*) from db_script";
 
+    private static final int BATCH_SIZE = 100;
+
     private RowMapper<SqlScript> rowMapper = (rs, rowNum) -> {
         SqlScript script = new SqlScript();
         script.setId(rs.getLong("db_script_id"));
         script.setName(rs.getString("name"));
         script.setFileHash(rs.getString("file_hash"));
-        script.setText(rs.getString("text"));
-        script.setTs(rs.getDate("ts"));
         script.setType(ScriptType.getById(rs.getLong("type")));
         script.setStatus(ScriptStatus.getById(rs.getLong("status")));
         return script;
@@ -50,7 +77,74 @@ public class DbScriptDaoOra extends AbstractDaoOra {
     };
 
     public Map<String, SqlScript> readMap() {
-        return jdbcTemplate.query(READ_ALL, dbScriptsExtractor);
+        return jdbcTemplate.query(READ_ALL_METADATA, dbScriptsExtractor);
+    }
+
+    /**
+     * Reads scripts of the given fingerprint buckets, see {@link com.onevizion.scmdb.vo.ScriptsFingerprint#getBucket}.
+     */
+    public Map<String, SqlScript> readMapByBuckets(Collection<String> buckets) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("buckets", varchar2List(buckets));
+        return namedParameterJdbcTemplate.query(READ_METADATA_BY_BUCKETS, params, dbScriptsExtractor);
+    }
+
+    /**
+     * Returns an order-independent hash of the names and file hashes of all saved scripts. It is computed over
+     * the unique index of db_script without reading the table rows.
+     */
+    public String readStateHash() {
+        return jdbcTemplate.queryForObject(READ_STATE_HASH, String.class);
+    }
+
+    /**
+     * Reads the scripts with the longest recorded execution, longest first. Only name and execution timing are read.
+     */
+    public List<SqlScript> readSlowest(int limit) {
+        return jdbcTemplate.query(READ_SLOWEST, (rs, rowNum) -> {
+            SqlScript script = new SqlScript();
+            script.setName(rs.getString("name"));
+            script.setExecStart(rs.getTimestamp("exec_start"));
+            script.setExecDurationMs(getLong(rs, "exec_duration_ms"));
+            script.setExecOverheadMs(getLong(rs, "exec_overhead_ms"));
+            script.setRecompileMs(getLong(rs, "recompile_ms"));
+            Long exitCode = getLong(rs, "exit_code");
+            script.setExitCode(exitCode == null ? null : exitCode.intValue());
+            return script;
+        }, limit);
+    }
+
+    /**
+     * Reads name, captured output and exit code of the script, null if the script isn't saved.
+     */
+    public SqlScript readOutput(String name) {
+        List<SqlScript> scripts = jdbcTemplate.query(READ_OUTPUT, (rs, rowNum) -> {
+            SqlScript script = new SqlScript();
+            script.setName(rs.getString("name"));
+            script.setOutput(rs.getString("output"));
+            Long exitCode = getLong(rs, "exit_code");
+            script.setExitCode(exitCode == null ? null : exitCode.intValue());
+            return script;
+        }, name);
+        return scripts.isEmpty() ? null : scripts.get(0);
+    }
+
+    private Long getLong(ResultSet rs, String column) throws SQLException {
+        long value = rs.getLong(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    /**
+     * Adds the execution timing columns to a db_script table created by an older version.
+     */
+    public void upgradeTable() {
+        if (jdbcTemplate.queryForObject(READ_EXEC_TIMING_COLUMN_COUNT, Long.class) == 0) {
+            jdbcTemplate.execute(ADD_EXEC_TIMING_COLUMNS);
+        }
+    }
+
+    public String readText(Long id) {
+        return jdbcTemplate.queryForObject(READ_TEXT, String.class, id);
     }
 
     public Long readCount() {
@@ -66,14 +160,69 @@ public class DbScriptDaoOra extends AbstractDaoOra {
         namedParameterJdbcTemplate.update(CREATE, new BeanPropertySqlParameterSource(script));
     }
 
+    public void createAllIfAbsent(List<SqlScript> scripts) {
+        for (int from = 0; from < scripts.size(); from += BATCH_SIZE) {
+            createBatchIfAbsent(scripts.subList(from, Math.min(from + BATCH_SIZE, scripts.size())));
+        }
+    }
+
+    private void createBatchIfAbsent(List<SqlScript> scripts) {
+        List<Reader> textReaders = new ArrayList<>(scripts.size());
+        try {
+            jdbcTemplate.batchUpdate(CREATE_IF_ABSENT, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    SqlScript script = scripts.get(i);
+                    ps.setString(1, script.getName());
+                    ps.setString(2, script.getFileHash());
+                    Reader textReader = openTextReader(script);
+                    if (textReader == null) {
+                        ps.setNull(3, Types.CLOB);
+                    } else {
+                        textReaders.add(textReader);
+                        ps.setCharacterStream(3, textReader);
+                    }
+                    ps.setTimestamp(4, script.getTs() == null ? null : new Timestamp(script.getTs().getTime()));
+                    if (script.getOutput() == null) {
+                        ps.setNull(5, Types.CLOB);
+                    } else {
+                        ps.setCharacterStream(5, new StringReader(script.getOutput()));
+                    }
+                    ps.setLong(6, script.getType().getId());
+                    ps.setLong(7, script.getStatus().getId());
+                    ps.setTimestamp(8, script.getExecStart() == null ? null : new Timestamp(script.getExecStart().getTime()));
+                    ps.setObject(9, script.getExecDurationMs(), Types.NUMERIC);
+                    ps.setObject(10, script.getExecOverheadMs(), Types.NUMERIC);
+                    ps.setObject(11, script.getRecompileMs(), Types.NUMERIC);
+                    ps.setObject(12, script.getExitCode(), Types.NUMERIC);
+                    ps.setString(13, script.getName());
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return scripts.size();
+                }
+            });
+        } finally {
+            textReaders.forEach(IOUtils::closeQuietly);
+        }
+    }
+
+    private Reader openTextReader(SqlScript script) throws SQLException {
+        try {
+            return script.openTextReader();
+        } catch (IOException e) {
+            throw new SQLException("Can't read text of script [" + script.getName() + "]", e);
+        }
+    }
+
     public void deleteByIds(List<Long> ids) {
         if (ids == null || ids.isEmpty()) {
             return;
         }
         Map<String, Object> params = new HashMap<>();
-        String sql = "delete from db_script where ";
-        sql += appendIn("db_script_id", ids, params);
-        namedParameterJdbcTemplate.update(sql, params);
+        params.put("ids", numberList(ids));
+        namedParameterJdbcTemplate.update(DELETE_BY_IDS, params);
     }
 
     public void batchUpdate(List<SqlScript> scripts) {
@@ -0,0 +1,54 @@
+package com.onevizion.scmdb.dao;
+
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Repository
+public class DbScriptFingerprintDaoOra extends AbstractDaoOra {
+    private static final String TABLE_NAME = "DB_SCRIPT_FINGERPRINT";
+    private static final String CREATE_TABLE = "create table db_script_fingerprint(" +
+            "name varchar2(30) not null, " +
+            "hash varchar2(64) not null, " +
+            "constraint pk_db_script_fingerprint primary key (name))";
+    private static final String READ_ALL = "select name, hash from db_script_fingerprint";
+    private static final String DELETE_ALL = "delete from db_script_fingerprint";
+    private static final String CREATE = "insert into db_script_fingerprint (name, hash) values (?, ?)";
+
+    public boolean isTableExist() throws SQLException {
+        try (Connection connection = jdbcTemplate.getDataSource().getConnection()) {
+            try (ResultSet rs = connection.getMetaData().getTables(null, connection.getSchema(), TABLE_NAME,
+                    new String[]{"TABLE"})) {
+                return rs.next();
+            }
+        }
+    }
+
+    public void createTable() {
+        jdbcTemplate.execute(CREATE_TABLE);
+    }
+
+    public Map<String, String> readHashes() {
+        Map<String, String> hashes = new HashMap<>();
+        jdbcTemplate.query(READ_ALL, (RowCallbackHandler) rs -> hashes.put(rs.getString("name"), rs.getString("hash")));
+        return hashes;
+    }
+
+    /**
+     * Replaces the saved hashes. Hashes are inserted in the iteration order of the map, so the root hash is
+     * expected last: a save interrupted before it leaves no root hash and the next run does a full diff.
+     */
+    public void save(Map<String, String> hashes) {
+        jdbcTemplate.update(DELETE_ALL);
+        List<Object[]> rows = new ArrayList<>(hashes.size());
+        hashes.forEach((name, hash) -> rows.add(new Object[]{name, hash}));
+        jdbcTemplate.batchUpdate(CREATE, rows);
+    }
+}
@@ -1,165 +1,233 @@
 package com.onevizion.scmdb.dao;
 
+import com.onevizion.scmdb.RunMetrics;
 import com.onevizion.scmdb.vo.DbObject;
 import com.onevizion.scmdb.vo.DbObjectType;
-import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
-import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Resource;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import static com.onevizion.scmdb.vo.DbObjectType.*;
 
 @Component
 public class DdlDao extends AbstractDaoOra {
-    public void executeTransformParamStatements() {
-        String plsqlBlock = "begin" +
-                "\n dbms_metadata.set_transform_param(dbms_metadata.session_transform,'PRETTY',true);" +
-                "\n dbms_metadata.set_transform_param(dbms_metadata.session_transform,'SQLTERMINATOR',true);" +
-                "\n dbms_metadata.set_transform_param(dbms_metadata.session_transform,'SEGMENT_ATTRIBUTES',false);" +
-                "\n end;";
-        jdbcTemplate.execute(plsqlBlock);
-    }
+    public static final int EXTRACT_CHUNK_SIZE = 100;
+    private static final int STREAM_FETCH_SIZE = 50;
+
+    @Resource
+    private RunMetrics runMetrics;
 
-    public List<DbObject> extractPackageBodiesDdls() {
-        List<DbObject> dbObjects = jdbcTemplate.query("select object_name," +
+    public void extractPackageBodiesDdls(Consumer<DbObject> consumer) {
+        streamDdls("select object_name," +
                 " dbms_metadata.get_ddl('PACKAGE_BODY', object_name)" +
                 " from user_objects" +
-                " where object_type = 'PACKAGE BODY'", new DbObjectExtractor());
-        return dbObjects;
+                " where object_type = 'PACKAGE BODY'", PACKAGE_BODY, consumer);
     }
 
-    public List<DbObject> extractPackageSpecDdls() {
-        List<DbObject> dbObjects = jdbcTemplate.query("select object_name," +
+    public void extractPackageSpecDdls(Consumer<DbObject> consumer) {
+        streamDdls("select object_name," +
                 " dbms_metadata.get_ddl('PACKAGE_SPEC', object_name)" +
                 " from user_objects" +
-                " where object_type = 'PACKAGE'", new DbObjectExtractor());
-        return dbObjects;
+                " where object_type = 'PACKAGE'", PACKAGE_SPEC, consumer);
     }
 
-    public List<DbObject> extractSequencesDdls() {
-        List<DbObject> dbObjects = jdbcTemplate.query("select trgrs.table_name," +
+    public void extractSequencesDdls(Consumer<DbObject> consumer) {
+        streamDdls("select trgrs.table_name," +
                 " dbms_metadata.get_ddl('SEQUENCE', depends.referenced_name)" +
                 " from user_dependencies depends, user_triggers trgrs" +
                 " where trgrs.trigger_name = depends.name and depends.type = 'TRIGGER'" +
-                " and depends.referenced_type = 'SEQUENCE' order by depends.referenced_name", new DbObjectExtractor());
-        return dbObjects;
+                " and depends.referenced_type = 'SEQUENCE' order by depends.referenced_name", SEQUENCE, consumer);
     }
 
-    public List<DbObject> extractViewsDdls() {
-        List<DbObject> dbObjects = jdbcTemplate.query("select view_name," +
+    public void extractViewsDdls(Consumer<DbObject> consumer) {
+        streamDdls("select view_name," +
                 " dbms_metadata.get_ddl('VIEW', view_name)" +
-                " from user_views", new DbObjectExtractor());
-        return dbObjects;
+                " from user_views", VIEW, consumer);
     }
 
-    public List<DbObject> extractTablesDdls() {
-        List<DbObject> dbObjects = jdbcTemplate.query("select object_name," +
-                        " dbms_metadata.get_ddl('TABLE', object_name)" +
-                        " from user_objects where object_type='TABLE' and generated = 'N' and object_name not like 'Z_%'",
-                new DbObjectExtractor()
-        );
-        return dbObjects;
+    public void extractTablesDdls(Consumer<DbObject> consumer) {
+        streamDdls("select object_name," +
+                " dbms_metadata.get_ddl('TABLE', object_name)" +
+                " from user_objects where object_type='TABLE' and generated = 'N' and object_name not like 'Z_%'",
+                TABLE, consumer);
     }
 
-    public List<DbObject> extractTriggersDdls() {
-        List<DbObject> dbObjects = jdbcTemplate.query("select table_name," +
+    public void extractTriggersDdls(Consumer<DbObject> consumer) {
+        streamDdls("select table_name," +
                 " dbms_metadata.get_ddl('TRIGGER', trigger_name)" +
                 " from user_triggers" +
                 " where table_name not like 'Z_%' and trigger_name not like 'Z_%'" +
-                " order by trigger_name", new DbObjectExtractor());
-        return dbObjects;
+                " order by trigger_name", TRIGGER, consumer);
     }
 
-    public List<DbObject> extractIndexesDdls() {
-        List<DbObject> dbObjects = jdbcTemplate.query("select table_name, dbms_metadata.get_ddl('INDEX', index_name)" +
+    public void extractIndexesDdls(Consumer<DbObject> consumer) {
+        streamDdls("select table_name, dbms_metadata.get_ddl('INDEX', index_name)" +
                 " from user_indexes" +
                 " where generated = 'N' and table_name not like 'Z_%' and index_name not like 'PK_%'" +
-                " order by table_name asc, uniqueness desc, index_name asc", new DbObjectExtractor());
-        return dbObjects;
+                " order by table_name asc, uniqueness desc, index_name asc", INDEX, consumer);
     }
 
-    public String extractDdl(DbObject dbObject) {
-        String sql = "select dbms_metadata.get_ddl(upper(:dbObjType), upper(:dbObjName)) from dual";
-        MapSqlParameterSource namedParams = new MapSqlParameterSource();
-        namedParams.addValue("dbObjName", dbObject.getName());
-        namedParams.addValue("dbObjType", dbObject.getType().toString());
-        return namedParameterJdbcTemplate.queryForObject(sql, namedParams, String.class);
+    /**
+     * Extracts DDL of the objects of one type and the DDL of their dependent objects in a few set-based queries.
+     * Expects at most {@value #EXTRACT_CHUNK_SIZE} upper case names. Objects are passed to the consumer one by one in
+     * name order, objects which don't exist are skipped.
+     */
+    public void extractDdls(DbObjectType type, List<String> names, List<DbObjectType> dependentTypes,
+                            Consumer<DbObject> consumer) {
+        Map<String, DbObject> dbObjects = new LinkedHashMap<>();
+        for (DbObject dbObject : extractChunkDdls(type, names)) {
+            dbObjects.put(dbObject.getName(), dbObject);
+        }
+        for (DbObjectType dependentType : dependentTypes) {
+            for (DbObject dependentObject : extractChunkDependentDdls(dependentType, names)) {
+                DbObject dbObject = dbObjects.get(dependentObject.getName());
+                if (dbObject != null) {
+                    dbObject.addDependentObject(dependentObject);
+                }
+            }
+        }
+        dbObjects.values().forEach(consumer);
     }
 
-    public List<DbObject> extractTableDependentObjectsDdl(String tableName, DbObjectType depObjType) {
-        MapSqlParameterSource namedParams = new MapSqlParameterSource();
-        namedParams.addValue("tableName", tableName);
-        namedParams.addValue("depObjType", depObjType.toString());
+    private List<DbObject> extractChunkDdls(DbObjectType type, List<String> names) {
+        Map<String, Object> namedParams = new HashMap<>();
+        namedParams.put("dbObjType", type.toString());
+        namedParams.put("objType", type.getName().toUpperCase());
+        namedParams.put("names", varchar2List(names));
+        String sql = "select object_name, dbms_metadata.get_ddl(:dbObjType, object_name)" +
+                " from user_objects where object_type = :objType" +
+                " and object_name in (select column_value from table(:names))" +
+                " order by object_name";
+        List<DbObject> dbObjects = namedParameterJdbcTemplate.query(sql, namedParams, new DbObjectExtractor(type));
+        runMetrics.add(RunMetrics.DDL_ROWS_FETCHED, dbObjects.size());
+        return dbObjects;
+    }
 
-        List<DbObject> dbObjects = null;
+    private List<DbObject> extractChunkDependentDdls(DbObjectType depObjType, List<String> tableNames) {
+        Map<String, Object> namedParams = new HashMap<>();
+        namedParams.put("tableNames", varchar2List(tableNames));
+        String sql;
         if (depObjType == COMMENT) {
-            String sql = "select table_name, dbms_metadata.get_dependent_ddl('COMMENT', table_name) from" +
+            sql = "select table_name, dbms_metadata.get_dependent_ddl('COMMENT', table_name) from" +
                     " ((select table_name from user_tab_comments" +
                     "     where comments is not null)" +
                     " union" +
                     "  (select table_name from user_col_comments" +
                     "     where comments is not null" +
-                    "     group by table_name)) where table_name = upper(:tableName)";
-            dbObjects = namedParameterJdbcTemplate.query(sql, namedParams, new DbObjectExtractor());
+                    "     group by table_name))" +
+                    " where table_name in (select column_value from table(:tableNames))" +
+                    " order by table_name";
         } else if (depObjType == SEQUENCE) {
-            String sql = "select trgrs.table_name, dbms_metadata.get_ddl('SEQUENCE', depends.referenced_name)" +
-                    " from user_dependencies depends, user_triggers trgrs" +
-                    " where trgrs.trigger_name = depends.name and depends.type = 'TRIGGER'" +
-                    " and depends.referenced_type = 'SEQUENCE' and trgrs.table_name = upper(:tableName)" +
-                    " order by depends.referenced_name";
-            dbObjects = namedParameterJdbcTemplate.query(sql, namedParams, new DbObjectExtractor());
+            sql = "select table_name, dbms_metadata.get_ddl('SEQUENCE', referenced_name) from" +
+                    " (select trgrs.table_name, depends.referenced_name" +
+                    "    from user_dependencies depends, user_triggers trgrs" +
+                    "   where trgrs.trigger_name = depends.name and depends.type = 'TRIGGER'" +
+                    "     and depends.referenced_type = 'SEQUENCE')" +
+                    " where table_name in (select column_value from table(:tableNames))" +
+                    " order by table_name, referenced_name";
         } else if (depObjType == INDEX) {
-            String sql = "select table_name, dbms_metadata.get_ddl(upper(:depObjType), index_name)" +
-                    " from user_indexes where generated = 'N' and table_name=upper(:tableName) and index_name not like 'PK_%'" +
+            sql = "select table_name, dbms_metadata.get_ddl('INDEX', index_name)" +
+                    " from user_indexes where generated = 'N' and index_name not like 'PK_%'" +
+                    " and table_name in (select column_value from table(:tableNames))" +
                     " order by table_name asc, uniqueness desc, index_name asc";
-            dbObjects = namedParameterJdbcTemplate.query(sql, namedParams, new DbObjectExtractor());
         } else if (depObjType == TRIGGER) {
-            String sql = "select table_name, dbms_metadata.get_ddl(upper(:depObjType), trigger_name)" +
-                    " from user_triggers where table_name=upper(:tableName)" +
-                    " and trigger_name not like 'Z_%' order by trigger_name";
-            dbObjects = namedParameterJdbcTemplate.query(sql, namedParams, new DbObjectExtractor());
+            sql = "select table_name, dbms_metadata.get_ddl('TRIGGER', trigger_name)" +
+                    " from user_triggers where trigger_name not like 'Z_%'" +
+                    " and table_name in (select column_value from table(:tableNames))" +
+                    " order by table_name, trigger_name";
+        } else {
+            throw new IllegalArgumentException("Unsupported dependent object type [" + depObjType + "]");
         }
-
+        List<DbObject> dbObjects = namedParameterJdbcTemplate.query(sql, namedParams, new DbObjectExtractor(depObjType));
+        runMetrics.add(RunMetrics.DDL_ROWS_FETCHED, dbObjects.size());
         return dbObjects;
     }
 
-    public String getTableNameByDepObject(DbObject dbObject) {
-        MapSqlParameterSource namedParams = new MapSqlParameterSource();
-        namedParams.addValue("objName", dbObject.getName());
+    /**
+     * Returns the names of tables which own the given indexes, triggers or sequences, keyed by the name of the
+     * dependent object. A sequence is owned by the tables of the triggers which use it.
+     */
+    public Map<String, Set<String>> getTableNamesByDepObjects(DbObjectType depObjType, Collection<String> names) {
+        List<String> upperNames = names.stream().map(String::toUpperCase).collect(Collectors.toList());
+        Map<String, Object> namedParams = new HashMap<>();
+        namedParams.put("names", varchar2List(upperNames));
         String sql;
-        if (dbObject.getType() == INDEX) {
-            sql = "select table_name from user_indexes where index_name = upper(:objName)";
-        } else if (dbObject.getType() == TRIGGER) {
-            sql = "select table_name from user_triggers where trigger_name = upper(:objName)";
-        } else if (dbObject.getType() == SEQUENCE) {
-            sql = "select trgrs.table_name from user_dependencies depends, user_triggers trgrs" +
-                    " where trgrs.trigger_name = depends.name and depends.type = 'TRIGGER'" +
-                    " and depends.referenced_type = 'SEQUENCE' and depends.referenced_name = upper(:objName)";
+        if (depObjType == INDEX) {
+            sql = "select index_name, table_name from user_indexes" +
+                    " where index_name in (select column_value from table(:names))";
+        } else if (depObjType == TRIGGER) {
+            sql = "select trigger_name, table_name from user_triggers" +
+                    " where trigger_name in (select column_value from table(:names))";
+        } else if (depObjType == SEQUENCE) {
+            sql = "select referenced_name, table_name from" +
+                    " (select depends.referenced_name, trgrs.table_name" +
+                    "    from user_dependencies depends, user_triggers trgrs" +
+                    "   where trgrs.trigger_name = depends.name and depends.type = 'TRIGGER'" +
+                    "     and depends.referenced_type = 'SEQUENCE')" +
+                    " where referenced_name in (select column_value from table(:names))";
         } else {
-            return null;
+            return Collections.emptyMap();
         }
-        try {
-            return namedParameterJdbcTemplate.queryForObject(sql, namedParams, String.class);
-        } catch (EmptyResultDataAccessException e) {
-            return null;
+
+        Map<String, Set<String>> tableNames = new HashMap<>();
+        namedParameterJdbcTemplate.query(sql, namedParams, (RowCallbackHandler) rs ->
+                tableNames.computeIfAbsent(rs.getString(1).toLowerCase(), name -> new TreeSet<>())
+                          .add(rs.getString(2).toLowerCase()));
+        return tableNames;
+    }
+
+    /**
+     * Returns the names of the given objects which exist in the schema, in lower case.
+     */
+    public Set<String> readExistingObjectNames(Collection<String> names) {
+        Set<String> existingNames = new TreeSet<>();
+        if (names.isEmpty()) {
+            return existingNames;
         }
+        List<String> upperNames = names.stream().map(String::toUpperCase).collect(Collectors.toList());
+        Map<String, Object> namedParams = new HashMap<>();
+        namedParams.put("names", varchar2List(upperNames));
+        namedParameterJdbcTemplate.query("select distinct object_name from user_objects" +
+                " where object_name in (select column_value from table(:names))", namedParams,
+                (RowCallbackHandler) rs -> existingNames.add(rs.getString(1).toLowerCase()));
+        return existingNames;
     }
 
-    public DbObjectType getObjectTypeByName(String dbObjName) {
-        String sql = "select 'TABLE' object_type from user_tables where table_name = upper(:dbObjName)" +
-                " union all select 'VIEW' object_type from user_views where view_name = upper(:dbObjName)";
-        MapSqlParameterSource namedParams = new MapSqlParameterSource();
-        namedParams.addValue("dbObjName", dbObjName);
-        String dbObjTypeString = namedParameterJdbcTemplate.queryForObject(sql, namedParams, String.class);
-        return DbObjectType.valueOf(dbObjTypeString);
+    /**
+     * Resolves commented objects to tables or views.
+     */
+    public Map<String, DbObjectType> getObjectTypesByNames(Collection<String> names) {
+        List<String> upperNames = names.stream().map(String::toUpperCase).collect(Collectors.toList());
+        Map<String, Object> namedParams = new HashMap<>();
+        namedParams.put("names", varchar2List(upperNames));
+        String sql = "select table_name, 'TABLE' object_type from user_tables" +
+                " where table_name in (select column_value from table(:names))" +
+                " union all select view_name, 'VIEW' object_type from user_views" +
+                " where view_name in (select column_value from table(:names))";
+
+        Map<String, DbObjectType> objectTypes = new HashMap<>();
+        namedParameterJdbcTemplate.query(sql, namedParams, (RowCallbackHandler) rs ->
+                objectTypes.put(rs.getString(1).toLowerCase(), DbObjectType.valueOf(rs.getString(2))));
+        return objectTypes;
     }
 
-    public List<DbObject> extractTabCommentsDdls() {
-        List<DbObject> dbObjects = jdbcTemplate.query(
+    public void extractTabCommentsDdls(Consumer<DbObject> consumer) {
+        streamDdls(
                 "select table_name, dbms_metadata.get_dependent_ddl('COMMENT', table_name) from" +
                         "(select tab1.table_name, tab1.table_type from user_tab_comments tab1" +
                         "  inner join ((select table_name from user_tab_comments" +
@@ -170,13 +238,11 @@ public class DdlDao extends AbstractDaoOra {
                         "                  group by table_name)) tab2" +
                         "     on tab1.table_name=tab2.table_name)" +
                         "  where table_type='TABLE'" +
-                        "  order by table_name", new DbObjectExtractor()
-        );
-        return dbObjects;
+                        "  order by table_name", COMMENT, consumer);
     }
 
-    public List<DbObject> extractViewCommentsDdls() {
-        List<DbObject> dbObjects = jdbcTemplate.query(
+    public void extractViewCommentsDdls(Consumer<DbObject> consumer) {
+        streamDdls(
                 "select table_name, dbms_metadata.get_dependent_ddl('COMMENT', table_name) from" +
                         "(select tab1.table_name, tab1.table_type from user_tab_comments tab1" +
                         "  inner join ((select table_name from user_tab_comments" +
@@ -187,31 +253,33 @@ public class DdlDao extends AbstractDaoOra {
                         "                  group by table_name)) tab2" +
                         "     on tab1.table_name=tab2.table_name)" +
                         "  where table_type='VIEW'" +
-                        "  order by table_name",
-                new DbObjectExtractor()
-        );
-        return dbObjects;
+                        "  order by table_name", COMMENT, consumer);
     }
 
-    public boolean isExist(String objectName, DbObjectType objectType) {
-        MapSqlParameterSource namedParams = new MapSqlParameterSource();
-        namedParams.addValue("objName", objectName);
-        namedParams.addValue("objType", objectType.getName().toUpperCase());
-        String sql = "select case when" +
-                "                count(object_name) > 0 then 'true'" +
-                "            else 'false'" +
-                "        end" +
-                "    from user_objects where object_name = upper(:objName) and object_type = upper(:objType)";
-        String boolStr = namedParameterJdbcTemplate.queryForObject(sql, namedParams, String.class);
-        return Boolean.valueOf(boolStr);
+    private void streamDdls(String sql, DbObjectType type, Consumer<DbObject> consumer) {
+        DbObjectExtractor extractor = new DbObjectExtractor(type);
+        jdbcTemplate.query(con -> {
+            PreparedStatement statement = con.prepareStatement(sql);
+            statement.setFetchSize(STREAM_FETCH_SIZE);
+            return statement;
+        }, (RowCallbackHandler) rs -> {
+            runMetrics.increment(RunMetrics.DDL_ROWS_FETCHED);
+            consumer.accept(extractor.mapRow(rs, rs.getRow()));
+        });
     }
 
     private static final class DbObjectExtractor implements RowMapper<DbObject> {
+        private final DbObjectType type;
+
+        private DbObjectExtractor(DbObjectType type) {
+            this.type = type;
+        }
 
         @Override
         public DbObject mapRow(ResultSet rs, int rowNum) throws SQLException {
             DbObject dbObject = new DbObject();
             dbObject.setName(rs.getString(1));
+            dbObject.setType(type);
             dbObject.setDdl(rs.getString(2));
             return dbObject;
         }
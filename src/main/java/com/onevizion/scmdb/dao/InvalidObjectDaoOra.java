@@ -0,0 +1,75 @@
+package com.onevizion.scmdb.dao;
+
+import com.onevizion.scmdb.vo.SchemaObject;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Repository
+public class InvalidObjectDaoOra extends AbstractDaoOra {
+    private static final String COMPILED_TYPES = "('TRIGGER', 'PROCEDURE', 'FUNCTION', 'PACKAGE', 'PACKAGE BODY', 'TYPE', 'TYPE BODY', 'INDEX', 'VIEW', 'SYNONYM')";
+    private static final String READ_INVALID = "select object_name, object_type from user_objects where status <> 'VALID' and object_type in " + COMPILED_TYPES;
+    private static final String READ_ALL_INVALID = "select object_name, object_type from user_objects where status <> 'VALID' and object_name not like 'BIN$%' order by object_type, object_name";
+    private static final String READ_INVALID_DEPENDENCIES =
+            "select d.name, d.type, d.referenced_name, d.referenced_type from user_dependencies d " +
+            "join user_objects o on o.object_name = d.name and o.object_type = d.type " +
+            "join user_objects r on r.object_name = d.referenced_name and r.object_type = d.referenced_type " +
+            "where d.referenced_owner = user and o.status <> 'VALID' and r.status <> 'VALID' " +
+            "and o.object_type in " + COMPILED_TYPES + " and r.object_type in " + COMPILED_TYPES;
+    private static final String COMPILE_SCHEMA = "begin dbms_utility.compile_schema(user || ?, false); end;";
+
+    private RowMapper<SchemaObject> rowMapper = (rs, rowNum) -> new SchemaObject(rs.getString("object_name"), rs.getString("object_type"));
+
+    public List<SchemaObject> readInvalid() {
+        return jdbcTemplate.query(READ_INVALID, rowMapper);
+    }
+
+    public List<SchemaObject> readAllInvalid() {
+        return jdbcTemplate.query(READ_ALL_INVALID, rowMapper);
+    }
+
+    public Map<SchemaObject, Set<SchemaObject>> readInvalidDependencies() {
+        Map<SchemaObject, Set<SchemaObject>> dependencies = new HashMap<>();
+        jdbcTemplate.query(READ_INVALID_DEPENDENCIES, rs -> {
+            SchemaObject object = new SchemaObject(rs.getString("name"), rs.getString("type"));
+            SchemaObject referenced = new SchemaObject(rs.getString("referenced_name"), rs.getString("referenced_type"));
+            if (!object.equals(referenced)) {
+                dependencies.computeIfAbsent(object, k -> new HashSet<>()).add(referenced);
+            }
+        });
+        return dependencies;
+    }
+
+    public void compile(SchemaObject object) {
+        jdbcTemplate.execute(getCompileSql(object));
+    }
+
+    public void compileSchema(String schemaSuffix) {
+        jdbcTemplate.update(COMPILE_SCHEMA, schemaSuffix);
+    }
+
+    private String getCompileSql(SchemaObject object) {
+        String name = "\"" + object.getName() + "\"";
+        switch (object.getType()) {
+            case "PACKAGE":
+                return "alter package " + name + " compile specification";
+            case "PACKAGE BODY":
+                return "alter package " + name + " compile body";
+            case "TYPE":
+                return "alter type " + name + " compile specification";
+            case "TYPE BODY":
+                return "alter type " + name + " compile body";
+            case "INDEX":
+                return "alter index " + name + " rebuild";
+            case "SYNONYM":
+                return "alter synonym " + name + " compile";
+            default:
+                return "alter " + object.getType().toLowerCase() + " " + name + " compile";
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.onevizion.scmdb.dao;
+
+import oracle.jdbc.OracleConnection;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Sets the dbms_metadata session transform params on every physical connection of the pool before it is handed out
+ * for the first time, so DDL is formatted the same way whichever connection extracts it.
+ */
+public class MetadataSessionDataSource extends DelegatingDataSource {
+    private static final String TRANSFORM_PARAMS_BLOCK = "begin" +
+            "\n dbms_metadata.set_transform_param(dbms_metadata.session_transform,'PRETTY',true);" +
+            "\n dbms_metadata.set_transform_param(dbms_metadata.session_transform,'SQLTERMINATOR',true);" +
+            "\n dbms_metadata.set_transform_param(dbms_metadata.session_transform,'SEGMENT_ATTRIBUTES',false);" +
+            "\n end;";
+
+    private final Set<Connection> initializedConnections = Collections.synchronizedSet(
+            Collections.newSetFromMap(new WeakHashMap<>()));
+
+    public MetadataSessionDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return initialize(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return initialize(super.getConnection(username, password));
+    }
+
+    private Connection initialize(Connection connection) throws SQLException {
+        // the pool wraps the same physical connection into a new proxy on every borrow
+        Connection physicalConnection = connection.isWrapperFor(OracleConnection.class)
+                ? connection.unwrap(OracleConnection.class) : connection;
+        if (initializedConnections.contains(physicalConnection)) {
+            return connection;
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(TRANSFORM_PARAMS_BLOCK);
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        initializedConnections.add(physicalConnection);
+        return connection;
+    }
+}
@@ -1,7 +1,13 @@
 package com.onevizion.scmdb.facade;
 
 import com.onevizion.scmdb.AppArguments;
+import com.onevizion.scmdb.RunMetrics;
+import com.onevizion.scmdb.RunStoppedException;
+import com.onevizion.scmdb.ScriptMetadataJournal;
+import com.onevizion.scmdb.ScriptsScanner;
 import com.onevizion.scmdb.dao.DbScriptDaoOra;
+import com.onevizion.scmdb.dao.DbScriptFingerprintDaoOra;
+import com.onevizion.scmdb.vo.ScriptsFingerprint;
 import com.onevizion.scmdb.vo.SqlScript;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.math.NumberUtils;
@@ -15,12 +21,18 @@ import java.io.IOException;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static com.onevizion.scmdb.vo.ScriptType.COMMIT;
+import static com.onevizion.scmdb.vo.ScriptsFingerprint.ROOT_KEY;
 
 @Component
 public class DbScriptFacade {
@@ -30,34 +42,183 @@ public class DbScriptFacade {
     @Resource
     private AppArguments appArguments;
 
+    @Resource
+    private ScriptsScanner scriptsScanner;
+
+    @Resource
+    private ScriptMetadataJournal metadataJournal;
+
+    @Resource
+    private DbScriptFingerprintDaoOra fingerprintDaoOra;
+
+    @Resource
+    private RunMetrics runMetrics;
+
     private final static String EXEC_FOLDER_NAME = "EXECUTE_ME";
+    private final static String DB_STATE_KEY = "db_state";
     private final static String ERROR_MSG_COMMIT_DELETED_WITHOUT_ROLLBACK = "Following scripts were deleted but it's rollbacks are still here. Remove rollbacks scripts or restore deleted scripts and then run scmdb again.";
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     private File execDir;
-    private List<SqlScript> scriptsInDir;
+    private CompletableFuture<List<SqlScript>> scriptsInDir;
+    private Map<String, SqlScript> dbScriptsSnapshot;
+    private ScriptsFingerprint fingerprint;
+    private Set<String> changedBuckets;
+    private Boolean isFingerprintEnabled;
 
     public void init() {
-        execDir = new File(appArguments.getScriptsDirectory().getAbsolutePath() + File.separator + EXEC_FOLDER_NAME);
-        scriptsInDir = createScriptsFromFiles();
+        execDir = createExecDir();
+        scriptsInDir = CompletableFuture.supplyAsync(this::createScriptsFromFiles);
+    }
+
+    /**
+     * Uses scripts scanned once for all targets of a fan-out. The scripts are copied, a run changes the scripts it
+     * diffs and executes.
+     */
+    public void init(List<SqlScript> scannedScripts) {
+        execDir = createExecDir();
+        scriptsInDir = CompletableFuture.completedFuture(scannedScripts.stream()
+                                                                       .map(SqlScript::copyOf)
+                                                                       .collect(Collectors.toList()));
+    }
+
+    private File createExecDir() {
+        File dir = new File(appArguments.getScriptsDirectory().getAbsolutePath() + File.separator + EXEC_FOLDER_NAME);
+        return appArguments.getTargetName() == null ? dir : new File(dir, appArguments.getTargetName());
+    }
+
+    /**
+     * Waits for the scan of the scripts directory started by {@link #init()}.
+     */
+    public void awaitScan() {
+        getScriptsInDir();
+    }
+
+    private List<SqlScript> getScriptsInDir() {
+        try {
+            return scriptsInDir.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException("Can't scan scripts directory", e.getCause());
+        }
     }
 
     public List<SqlScript> getNewScripts() {
         logger.debug("Searching new scripts in [{}]", appArguments.getScriptsDirectory().getAbsolutePath());
 
-        Map<String, SqlScript> savedScripts = sqlScriptDaoOra.readMap();
+        long diffStart = System.nanoTime();
+        Map<String, SqlScript> savedScripts = getDbScriptsSnapshot();
+
+        List<SqlScript> scriptsToDiff = getScriptsToDiff();
+        scriptsToDiff.stream()
+                     .parallel()
+                     .filter(this::isDevScript)
+                     .forEach(script -> logger.info("Dev script [" + script.getName() + "] was ignored"));
+
+        List<SqlScript> newScripts = scriptsToDiff.stream()
+                                                  .parallel()
+                                                  .filter(script -> !savedScripts.containsKey(script.getName()))
+                                                  .filter(script -> !isDevScript(script))
+                                                  .collect(Collectors.toList());
+        runMetrics.recordPhase(RunMetrics.DIFF_PHASE, diffStart);
+        return newScripts;
+    }
+
+    private Map<String, SqlScript> getDbScriptsSnapshot() {
+        if (dbScriptsSnapshot == null) {
+            long readStart = System.nanoTime();
+            if (changedBuckets == null) {
+                dbScriptsSnapshot = Collections.unmodifiableMap(sqlScriptDaoOra.readMap());
+            } else if (changedBuckets.isEmpty()) {
+                dbScriptsSnapshot = Collections.emptyMap();
+            } else {
+                dbScriptsSnapshot = Collections.unmodifiableMap(sqlScriptDaoOra.readMapByBuckets(changedBuckets));
+            }
+            runMetrics.recordPhase(RunMetrics.READ_DB_SCRIPTS_PHASE, readStart);
+            runMetrics.add(RunMetrics.DB_SCRIPT_ROWS_FETCHED, dbScriptsSnapshot.size());
+        }
+        return dbScriptsSnapshot;
+    }
+
+    /**
+     * Returns scripts of the directory which can differ from db_script. Scripts of the buckets which are unchanged
+     * since the last run are left out, the db_script snapshot leaves them out too.
+     */
+    private List<SqlScript> getScriptsToDiff() {
+        if (changedBuckets == null) {
+            return getScriptsInDir();
+        }
+        return getScriptsInDir().stream()
+                                .filter(script -> changedBuckets.contains(ScriptsFingerprint.getBucket(script.getName())))
+                                .collect(Collectors.toList());
+    }
+
+    /**
+     * Compares the scripts directory and db_script with the fingerprint saved by the last successful run. When only
+     * some buckets of the directory were changed, the following diff reads and compares just these buckets.
+     */
+    public boolean isUnchangedSinceLastRun() {
+        if (!isFingerprintEnabled()) {
+            return false;
+        }
+        long fingerprintStart = System.nanoTime();
+        try {
+            Map<String, String> savedHashes = fingerprintDaoOra.readHashes();
+            if (!sqlScriptDaoOra.readStateHash().equals(savedHashes.remove(DB_STATE_KEY))) {
+                logger.debug("db_script was changed since the last run, comparing all scripts");
+                return false;
+            }
+            if (getFingerprint().getRootHash().equals(savedHashes.remove(ROOT_KEY))) {
+                return true;
+            }
+            changedBuckets = getFingerprint().getChangedBuckets(savedHashes);
+            logger.debug("Comparing scripts of {} changed fingerprint buckets", changedBuckets.size());
+            return false;
+        } finally {
+            runMetrics.recordPhase(RunMetrics.FINGERPRINT_PHASE, fingerprintStart);
+        }
+    }
 
-        scriptsInDir.stream()
-                    .parallel()
-                    .filter(this::isDevScript)
-                    .forEach(script -> logger.info("Dev script [" + script.getName() + "] was ignored"));
+    /**
+     * Saves the fingerprint of the scripts directory and the state of db_script. Should be called only after a run
+     * which left db_script in sync with the directory.
+     */
+    public void saveFingerprint() {
+        if (!isFingerprintEnabled()) {
+            return;
+        }
+        runMetrics.time(RunMetrics.METADATA_WRITES_PHASE, () -> {
+            Map<String, String> hashes = new LinkedHashMap<>(getFingerprint().getBucketHashes());
+            hashes.put(DB_STATE_KEY, sqlScriptDaoOra.readStateHash());
+            hashes.put(ROOT_KEY, getFingerprint().getRootHash());
+            fingerprintDaoOra.save(hashes);
+        });
+    }
 
-        return scriptsInDir.stream()
-                           .parallel()
-                           .filter(script -> !savedScripts.containsKey(script.getName()))
-                           .filter(script -> !isDevScript(script))
-                           .collect(Collectors.toList());
+    private ScriptsFingerprint getFingerprint() {
+        if (fingerprint == null) {
+            fingerprint = ScriptsFingerprint.of(getScriptsInDir());
+        }
+        return fingerprint;
+    }
+
+    private boolean isFingerprintEnabled() {
+        if (isFingerprintEnabled == null) {
+            try {
+                if (!fingerprintDaoOra.isTableExist()) {
+                    logger.debug("Creating table db_script_fingerprint");
+                    fingerprintDaoOra.createTable();
+                }
+                isFingerprintEnabled = true;
+            } catch (Exception e) {
+                logger.warn("Can't create table db_script_fingerprint, every run compares all scripts: {}", e.getMessage());
+                isFingerprintEnabled = false;
+            }
+        }
+        return isFingerprintEnabled;
     }
 
     private boolean isDevScript(SqlScript script) {
@@ -73,10 +234,11 @@ public class DbScriptFacade {
 
     public void copyRollbackToExecDir(SqlScript rollback) {
         File rollBackFile = new File(execDir.getAbsolutePath() + File.separator + rollback.getName());
+        String rollbackText = sqlScriptDaoOra.readText(rollback.getId());
         rollback.setFile(rollBackFile);
         try {
             logger.debug("Creating rollback script [{}]", rollBackFile.getAbsolutePath());
-            FileUtils.writeStringToFile(rollBackFile, rollback.getText(), "UTF-8");
+            FileUtils.writeStringToFile(rollBackFile, rollbackText, "UTF-8");
         } catch (IOException e) {
             logger.error("Can't create file [{}]", rollBackFile.getAbsolutePath(), e);
             throw new RuntimeException(e);
@@ -98,17 +260,18 @@ public class DbScriptFacade {
     }
 
     private List<SqlScript> createScriptsFromFiles() {
-        List<File> scriptFiles = (List<File>) FileUtils.listFiles(appArguments.getScriptsDirectory(), new String[]{"sql"}, false);
-        return scriptFiles.stream()
-                          .map(SqlScript::create)
-                          .collect(Collectors.toList());
+        long scanStart = System.nanoTime();
+        List<SqlScript> scripts = scriptsScanner.scan(appArguments.getScriptsDirectory());
+        runMetrics.recordPhase(RunMetrics.SCAN_PHASE, scanStart);
+        return scripts;
     }
 
     public List<SqlScript> getUpdatedScripts() {
+        long diffStart = System.nanoTime();
         List<SqlScript> updatedScripts = new ArrayList<>();
-        Map<String, SqlScript> dbScripts = sqlScriptDaoOra.readMap();
+        Map<String, SqlScript> dbScripts = getDbScriptsSnapshot();
 
-        for (SqlScript scriptInDir : scriptsInDir) {
+        for (SqlScript scriptInDir : getScriptsToDiff()) {
             if (!dbScripts.containsKey(scriptInDir.getName())) {
                 continue;
             }
@@ -119,21 +282,23 @@ public class DbScriptFacade {
             }
         }
 
+        runMetrics.recordPhase(RunMetrics.DIFF_PHASE, diffStart);
         return updatedScripts;
     }
 
     public void batchUpdate(List<SqlScript> updatedScripts) {
-        sqlScriptDaoOra.batchUpdate(updatedScripts);
+        runMetrics.time(RunMetrics.METADATA_WRITES_PHASE, () -> sqlScriptDaoOra.batchUpdate(updatedScripts));
     }
 
     public void batchCreate(List<SqlScript> scripts) {
-        sqlScriptDaoOra.createAll(scripts);
+        runMetrics.time(RunMetrics.METADATA_WRITES_PHASE, () -> sqlScriptDaoOra.createAll(scripts));
     }
 
     public Map<String, SqlScript> getDeletedScriptsMap() {
-        Map<String, SqlScript> dbScripts = sqlScriptDaoOra.readMap();
-        Map<String, SqlScript> scriptsInDirMap = scriptsInDir.stream()
-                                                             .collect(Collectors.toMap(SqlScript::getName, Function.identity()));
+        long diffStart = System.nanoTime();
+        Map<String, SqlScript> dbScripts = getDbScriptsSnapshot();
+        Map<String, SqlScript> scriptsInDirMap = getScriptsInDir().stream()
+                                                                  .collect(Collectors.toMap(SqlScript::getName, Function.identity()));
 
 
         logger.debug("Searching deleted scripts in [{}]", appArguments.getScriptsDirectory().getAbsolutePath());
@@ -151,28 +316,39 @@ public class DbScriptFacade {
             logger.error(ERROR_MSG_COMMIT_DELETED_WITHOUT_ROLLBACK);
             commitsDeletedWithoutRollbacks.forEach(script -> logger.error("Deleted script: [{}], rollback: [{}]",
                     script.getName(), script.getRollbackName()));
-            System.exit(0);
+            throw new RunStoppedException("Scripts were deleted but their rollbacks are still here");
         }
 
+        runMetrics.recordPhase(RunMetrics.DIFF_PHASE, diffStart);
         return deletedScripts;
     }
 
     public void deleteAll(Collection<SqlScript> scripts) {
-        sqlScriptDaoOra.deleteByIds(scripts.stream()
-                                           .map(SqlScript::getId)
-                                           .collect(Collectors.toList()));
+        List<Long> ids = scripts.stream()
+                                .map(SqlScript::getId)
+                                .collect(Collectors.toList());
+        runMetrics.time(RunMetrics.METADATA_WRITES_PHASE, () -> sqlScriptDaoOra.deleteByIds(ids));
     }
 
     public void create(SqlScript script) {
-        sqlScriptDaoOra.create(script);
+        metadataJournal.create(script);
     }
 
     public void createAllFromDirectory() {
-        sqlScriptDaoOra.createAll(createScriptsFromFiles());
+        List<SqlScript> scripts = getScriptsInDir();
+        runMetrics.time(RunMetrics.METADATA_WRITES_PHASE, () -> sqlScriptDaoOra.createAll(scripts));
     }
 
     public void delete(Long id) {
-        sqlScriptDaoOra.delete(id);
+        metadataJournal.delete(id);
+    }
+
+    public void recoverJournal() {
+        runMetrics.time(RunMetrics.METADATA_WRITES_PHASE, metadataJournal::recover);
+    }
+
+    public void flushJournal() {
+        runMetrics.time(RunMetrics.METADATA_WRITES_PHASE, metadataJournal::flush);
     }
 
     public void copyScriptsToExecDir(List<SqlScript> scripts) {
@@ -190,6 +366,18 @@ public class DbScriptFacade {
         }
     }
 
+    public void upgradeScriptTable() {
+        sqlScriptDaoOra.upgradeTable();
+    }
+
+    public List<SqlScript> getSlowestScripts(int limit) {
+        return sqlScriptDaoOra.readSlowest(limit);
+    }
+
+    public SqlScript getScriptOutput(String name) {
+        return sqlScriptDaoOra.readOutput(name);
+    }
+
     public boolean isScriptTableExist() {
         try {
             return sqlScriptDaoOra.isScriptTableExist();
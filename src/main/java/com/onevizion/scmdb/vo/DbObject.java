@@ -1,9 +1,16 @@
 package com.onevizion.scmdb.vo;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
 public class DbObject {
     private String name;
     private DbObjectType type;
     private String ddl;
+    private final Map<DbObjectType, List<DbObject>> dependentObjects = new EnumMap<>(DbObjectType.class);
 
     public DbObject(String name, DbObjectType type) {
         this.name = name.toLowerCase();
@@ -36,6 +43,14 @@ public class DbObject {
         this.type = type;
     }
 
+    public List<DbObject> getDependentObjects(DbObjectType type) {
+        return dependentObjects.getOrDefault(type, Collections.emptyList());
+    }
+
+    public void addDependentObject(DbObject dependentObject) {
+        dependentObjects.computeIfAbsent(dependentObject.getType(), type -> new ArrayList<>()).add(dependentObject);
+    }
+
     @Override
     public String toString() {
         return name + " | " + type;
@@ -0,0 +1,34 @@
+package com.onevizion.scmdb.vo;
+
+public class DdlEvent {
+    private final String verb;
+    private final DbObjectType type;
+    private final String name;
+
+    public DdlEvent(String verb, DbObjectType type, String name) {
+        this.verb = verb;
+        this.type = type;
+        this.name = name.toLowerCase();
+    }
+
+    public String getVerb() {
+        return verb;
+    }
+
+    public DbObjectType getType() {
+        return type;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public DbObject toDbObject() {
+        return new DbObject(name, type);
+    }
+
+    @Override
+    public String toString() {
+        return verb + " " + type.getName() + " " + name;
+    }
+}
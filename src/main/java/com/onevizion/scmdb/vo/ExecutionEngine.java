@@ -0,0 +1,26 @@
+package com.onevizion.scmdb.vo;
+
+public enum ExecutionEngine {
+    SQLCL("sqlcl"),
+    SQLCL_SESSION("sqlcl-session"),
+    JDBC("jdbc");
+
+    private String name;
+
+    ExecutionEngine(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static ExecutionEngine getByName(String name) {
+        for (ExecutionEngine engine : values()) {
+            if (engine.getName().equalsIgnoreCase(name)) {
+                return engine;
+            }
+        }
+        throw new IllegalArgumentException("Not supported execution engine: [" + name + "]");
+    }
+}
@@ -0,0 +1,36 @@
+package com.onevizion.scmdb.vo;
+
+public class ScriptStatement {
+    private final Type type;
+    private final String text;
+    private final int lineNumber;
+
+    public ScriptStatement(Type type, String text, int lineNumber) {
+        this.type = type;
+        this.text = text;
+        this.lineNumber = lineNumber;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public String toString() {
+        return type + " at line " + lineNumber + ": " + text;
+    }
+
+    public enum Type {
+        SQL,
+        PLSQL,
+        COMMAND
+    }
+}
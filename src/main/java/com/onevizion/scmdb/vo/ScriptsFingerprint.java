@@ -0,0 +1,89 @@
+package com.onevizion.scmdb.vo;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Two-level hash tree over (name, file hash) of the scripts directory. Scripts are spread over 256 buckets by the
+ * first byte of the sha1 of their name, every bucket is hashed over its sorted scripts and the root is hashed over
+ * the bucket hashes. Buckets which hash differently from a saved fingerprint hold every added, changed or deleted
+ * script.
+ */
+public class ScriptsFingerprint {
+    public static final String ROOT_KEY = "root";
+
+    private final String rootHash;
+    private final Map<String, String> bucketHashes;
+
+    private ScriptsFingerprint(String rootHash, Map<String, String> bucketHashes) {
+        this.rootHash = rootHash;
+        this.bucketHashes = Collections.unmodifiableMap(bucketHashes);
+    }
+
+    public static ScriptsFingerprint of(Collection<SqlScript> scripts) {
+        Map<String, List<SqlScript>> scriptsByBucket =
+                scripts.stream().collect(Collectors.groupingBy(script -> getBucket(script.getName()), TreeMap::new,
+                        Collectors.toList()));
+
+        Map<String, String> bucketHashes = new TreeMap<>();
+        MessageDigest rootDigest = DigestUtils.getSha1Digest();
+        for (Map.Entry<String, List<SqlScript>> bucket : scriptsByBucket.entrySet()) {
+            MessageDigest bucketDigest = DigestUtils.getSha1Digest();
+            bucket.getValue().stream()
+                  .sorted(Comparator.comparing(SqlScript::getName))
+                  .forEach(script -> update(bucketDigest, script.getName() + "\t" + script.getFileHash()));
+            String bucketHash = Hex.encodeHexString(bucketDigest.digest());
+            bucketHashes.put(bucket.getKey(), bucketHash);
+            update(rootDigest, bucket.getKey() + "\t" + bucketHash);
+        }
+        return new ScriptsFingerprint(Hex.encodeHexString(rootDigest.digest()), bucketHashes);
+    }
+
+    /**
+     * Returns the bucket of a script, the same value is computed in SQL by {@code DbScriptDaoOra}.
+     */
+    public static String getBucket(String scriptName) {
+        return DigestUtils.sha1Hex(scriptName.getBytes(StandardCharsets.UTF_8)).substring(0, 2);
+    }
+
+    /**
+     * Returns buckets which differ from the saved hashes, including buckets which became empty.
+     */
+    public Set<String> getChangedBuckets(Map<String, String> savedBucketHashes) {
+        Set<String> changedBuckets = new TreeSet<>();
+        bucketHashes.forEach((bucket, hash) -> {
+            if (!hash.equals(savedBucketHashes.get(bucket))) {
+                changedBuckets.add(bucket);
+            }
+        });
+        savedBucketHashes.keySet().stream()
+                         .filter(bucket -> !bucketHashes.containsKey(bucket))
+                         .forEach(changedBuckets::add);
+        return changedBuckets;
+    }
+
+    public String getRootHash() {
+        return rootHash;
+    }
+
+    public Map<String, String> getBucketHashes() {
+        return bucketHashes;
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) '\n');
+    }
+}
@@ -1,11 +1,22 @@
 package com.onevizion.scmdb.vo;
 
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.output.NullOutputStream;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 import java.util.Date;
 
 public class SqlScript implements Comparable<SqlScript> {
@@ -18,22 +29,28 @@ public class SqlScript implements Comparable<SqlScript> {
     private ScriptType type;
     private ScriptStatus status;
     private File file;
+    private int errorCount;
+    private int warningCount;
+    private int invalidObjectCount;
+    private Date execStart;
+    private Long execDurationMs;
+    private Long execOverheadMs;
+    private Long recompileMs;
+    private Integer exitCode;
 
     private static final String ROLLBACK_SUFFIX = "_rollback";
+    private static final int HASH_BUFFER_SIZE = 8192;
 
     public static SqlScript create(File scriptFile) {
+        return create(scriptFile, hashFile(scriptFile));
+    }
+
+    public static SqlScript create(File scriptFile, String fileHash) {
         SqlScript script = new SqlScript();
 
         script.setFile(scriptFile);
         script.setName(scriptFile.getName());
-        String fileContent;
-        try {
-            fileContent = FileUtils.readFileToString(scriptFile, "UTF-8");
-            script.setText(fileContent);
-            script.setFileHash(DigestUtils.sha1Hex(fileContent.replaceAll("\\r\\n", "\n")));
-        } catch (IOException e) {
-            throw new RuntimeException("Can't read file content [" + scriptFile.getName() + "]", e);
-        }
+        script.setFileHash(fileHash);
         script.setTs(new Date(scriptFile.lastModified()));
 
         if (FilenameUtils.getBaseName(script.getName()).endsWith(ROLLBACK_SUFFIX)) {
@@ -46,6 +63,73 @@ public class SqlScript implements Comparable<SqlScript> {
         return script;
     }
 
+    /**
+     * Copies a scanned script, so scripts of one scan can be diffed against several databases.
+     */
+    public static SqlScript copyOf(SqlScript scannedScript) {
+        SqlScript script = new SqlScript();
+
+        script.setFile(scannedScript.getFile());
+        script.setName(scannedScript.getName());
+        script.setFileHash(scannedScript.getFileHash());
+        script.setTs(scannedScript.getTs());
+        script.setType(scannedScript.getType());
+        script.setStatus(scannedScript.getStatus());
+
+        return script;
+    }
+
+    public static String hashFile(File scriptFile) {
+        MessageDigest digest = DigestUtils.getSha1Digest();
+        try (Reader reader = new InputStreamReader(new FileInputStream(scriptFile), StandardCharsets.UTF_8);
+             Writer digestWriter = new OutputStreamWriter(new DigestOutputStream(NullOutputStream.NULL_OUTPUT_STREAM, digest),
+                     StandardCharsets.UTF_8)) {
+            writeWithoutCarriageReturns(reader, digestWriter);
+        } catch (IOException e) {
+            throw new RuntimeException("Can't read file content [" + scriptFile.getName() + "]", e);
+        }
+        return Hex.encodeHexString(digest.digest());
+    }
+
+    private static void writeWithoutCarriageReturns(Reader reader, Writer writer) throws IOException {
+        char[] buffer = new char[HASH_BUFFER_SIZE];
+        boolean isCrPending = false;
+        int length;
+        while ((length = reader.read(buffer)) != -1) {
+            if (isCrPending && buffer[0] != '\n') {
+                writer.write('\r');
+            }
+            isCrPending = false;
+
+            int start = 0;
+            for (int i = 0; i < length; i++) {
+                if (buffer[i] != '\r') {
+                    continue;
+                }
+                if (i + 1 == length) {
+                    writer.write(buffer, start, i - start);
+                    start = length;
+                    isCrPending = true;
+                } else if (buffer[i + 1] == '\n') {
+                    writer.write(buffer, start, i - start);
+                    start = i + 1;
+                }
+            }
+            writer.write(buffer, start, length - start);
+        }
+        if (isCrPending) {
+            writer.write('\r');
+        }
+    }
+
+    private static String readFile(File scriptFile) {
+        try {
+            return FileUtils.readFileToString(scriptFile, "UTF-8");
+        } catch (IOException e) {
+            throw new RuntimeException("Can't read file content [" + scriptFile.getName() + "]", e);
+        }
+    }
+
     public Long getId() {
         return id;
     }
@@ -71,9 +155,19 @@ public class SqlScript implements Comparable<SqlScript> {
     }
 
     public String getText() {
+        if (text == null && file != null) {
+            return readFile(file);
+        }
         return text;
     }
 
+    public Reader openTextReader() throws IOException {
+        if (text == null && file != null) {
+            return new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8);
+        }
+        return text == null ? null : new StringReader(text);
+    }
+
     public void setText(String text) {
         this.text = text;
     }
@@ -118,6 +212,70 @@ public class SqlScript implements Comparable<SqlScript> {
         this.file = file;
     }
 
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    public void setErrorCount(int errorCount) {
+        this.errorCount = errorCount;
+    }
+
+    public int getWarningCount() {
+        return warningCount;
+    }
+
+    public void setWarningCount(int warningCount) {
+        this.warningCount = warningCount;
+    }
+
+    public int getInvalidObjectCount() {
+        return invalidObjectCount;
+    }
+
+    public void setInvalidObjectCount(int invalidObjectCount) {
+        this.invalidObjectCount = invalidObjectCount;
+    }
+
+    public Date getExecStart() {
+        return execStart;
+    }
+
+    public void setExecStart(Date execStart) {
+        this.execStart = execStart;
+    }
+
+    public Long getExecDurationMs() {
+        return execDurationMs;
+    }
+
+    public void setExecDurationMs(Long execDurationMs) {
+        this.execDurationMs = execDurationMs;
+    }
+
+    public Long getExecOverheadMs() {
+        return execOverheadMs;
+    }
+
+    public void setExecOverheadMs(Long execOverheadMs) {
+        this.execOverheadMs = execOverheadMs;
+    }
+
+    public Long getRecompileMs() {
+        return recompileMs;
+    }
+
+    public void setRecompileMs(Long recompileMs) {
+        this.recompileMs = recompileMs;
+    }
+
+    public Integer getExitCode() {
+        return exitCode;
+    }
+
+    public void setExitCode(Integer exitCode) {
+        this.exitCode = exitCode;
+    }
+
     public boolean isUserSchemaScript() {
         return hasUserSchemaSuffix(FilenameUtils.getBaseName(getCommitName()));
     }
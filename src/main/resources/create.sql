@@ -7,12 +7,23 @@ create table db_script(
     output clob null,
     type number not null,
     status number not null,
+    exec_start timestamp null,
+    exec_duration_ms number null,
+    exec_overhead_ms number null,
+    recompile_ms number null,
+    exit_code number null,
     constraint pk_db_script primary key (db_script_id)
 );
 
 create unique index u1_db_script on db_script (name, file_hash);
 create sequence seq_db_script_id;
 
+create table db_script_fingerprint(
+    name varchar2(30) not null,
+    hash varchar2(64) not null,
+    constraint pk_db_script_fingerprint primary key (name)
+);
+
 create or replace trigger tib_db_script before insert on db_script
     for each row
 begin
@@ -1,2 +1,6 @@
 WHENEVER SQLERROR EXIT SQL.SQLCODE
+set PAGESIZE 0
+set VERIFY OFF
+
+prompt scmdb:script-start
 @@ &1
\ No newline at end of file